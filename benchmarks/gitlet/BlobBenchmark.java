@@ -0,0 +1,61 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmark of reading and hashing a working file into a Blob.
+ *  @author Amy Kwon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BlobBenchmark {
+
+    /** Size of the file in bytes. */
+    @Param({ "1024", "65536", "1048576" })
+    public int fileSize;
+
+    /** Writes the file. */
+    @Setup
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("gitlet-bench").toFile();
+        Fixture.write(_dir, "file.txt", fileSize, new Random(fileSize));
+        _file = new File(_dir, "file.txt");
+    }
+
+    /** Deletes the file. */
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixture.delete(_dir);
+    }
+
+    /** Hashes the file. */
+    @Benchmark
+    public String hash() {
+        return new Blob(_file).hash();
+    }
+
+    /** Directory holding the file. */
+    private File _dir;
+    /** The file. */
+    private File _file;
+}
@@ -0,0 +1,138 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** Repositories the benchmarks run on, built in temporary directories by
+ *  running commands in this process.  The commands of gitlet work on the
+ *  directory named by the user.dir property, which chdir sets.
+ *  @author Amy Kwon
+ */
+final class Fixture {
+
+    /** Not instantiable. */
+    private Fixture() {
+    }
+
+    /** Returns a new repository in a new temporary directory, which
+     *  becomes the working directory.  FILES files of about SIZE bytes
+     *  each are committed first.  Branch other then gets a tenth as many
+     *  commits as master, changing files from the end of the list, and
+     *  master gets DEPTH commits, changing files from the start.  A commit
+     *  tracks only the files staged for it, so the last commit of each
+     *  branch rewrites every file, letting either branch be checked out
+     *  from the other.  Master is checked out. */
+    static File build(int files, int size, int depth) throws IOException {
+        File dir = Files.createTempDirectory("gitlet-bench").toFile();
+        chdir(dir);
+        Random random = new Random(SEED);
+        Command command = new Command();
+        change(command, dir, 0, files, size, random, "import files");
+        command.branch("other");
+        command.checkoutBranch("other");
+        int others = Math.max(1, depth / 10);
+        for (int i = 0; i < others; i += 1) {
+            boolean tip = i == others - 1;
+            change(command, dir, tip ? 0 : files - 1 - i % files,
+                   tip ? files : 0, size, random, "other change " + i);
+        }
+        command.checkoutBranch("master");
+        for (int i = 0; i < depth; i += 1) {
+            boolean tip = i == depth - 1;
+            change(command, dir, tip ? 0 : i % files, tip ? files : 0,
+                   size, random, "master change " + i);
+        }
+        command.save();
+        return dir;
+    }
+
+    /** Rewrites the files of the repository in DIR from the FIRSTth up to
+     *  but not including the LASTth with about SIZE bytes from RANDOM, or
+     *  only the FIRSTth if LAST is not after it, and commits them with
+     *  COMMAND under MESSAGE. */
+    private static void change(Command command, File dir, int first,
+                               int last, int size, Random random,
+                               String message) {
+        for (int i = first; i < Math.max(first + 1, last); i += 1) {
+            write(dir, name(i), size, random);
+            command.add(name(i));
+        }
+        command.commit(message);
+    }
+
+    /** Returns the name of the Ith file of a repository. */
+    static String name(int i) {
+        return String.format("f%05d.txt", i);
+    }
+
+    /** Writes about SIZE bytes of lines of text taken from RANDOM to the
+     *  file NAME in DIR. */
+    static void write(File dir, String name, int size, Random random) {
+        StringBuilder text = new StringBuilder(size + LINE);
+        while (text.length() < size) {
+            for (int i = 0; i < LINE - 1; i += 1) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            text.append('\n');
+        }
+        Utils.writeContents(new File(dir, name), text.toString());
+    }
+
+    /** Makes DIR the working directory of gitlet commands. */
+    static void chdir(File dir) {
+        System.setProperty("user.dir", dir.getAbsolutePath());
+    }
+
+    /** Returns the state of the repository in the working directory. */
+    static Command load() {
+        return Main.read();
+    }
+
+    /** Returns a copy of the repository in DIR, in a new temporary
+     *  directory that becomes the working directory. */
+    static File copy(File dir) throws IOException {
+        File result = Files.createTempDirectory("gitlet-bench").toFile();
+        Path from = dir.toPath(), to = result.toPath();
+        try (Stream<Path> paths = Files.walk(from)) {
+            paths.forEach(path -> {
+                try {
+                    Path target = to.resolve(from.relativize(path));
+                    if (Files.isDirectory(path)) {
+                        Files.createDirectories(target);
+                    } else {
+                        Files.copy(path, target);
+                    }
+                } catch (IOException excp) {
+                    throw new UncheckedIOException(excp);
+                }
+            });
+        }
+        chdir(result);
+        return result;
+    }
+
+    /** Deletes DIR and everything in it. */
+    static void delete(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder())
+                .forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /** Discards the output of commands. */
+    static void quiet() {
+        Main.setStdout(OutputStream.nullOutputStream());
+    }
+
+    /** Seed of the contents of the files. */
+    private static final long SEED = 61;
+    /** Length of a line of the files. */
+    private static final int LINE = 40;
+}
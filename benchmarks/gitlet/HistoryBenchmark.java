@@ -0,0 +1,128 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the commands that make or walk the history: commit,
+ *  log, finding the split point of two branches and merging them.
+ *  @author Amy Kwon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HistoryBenchmark {
+
+    /** Number of files in the repository. */
+    @Param({ "100", "1000" })
+    public int fileCount;
+
+    /** Number of commits on master after the first. */
+    @Param({ "10", "100", "1000" })
+    public int depth;
+
+    /** Builds the repository and loads its state. */
+    @Setup
+    public void setUp() throws IOException {
+        _dir = Fixture.build(fileCount, FILE_SIZE, depth);
+        Fixture.quiet();
+        _command = Fixture.load();
+    }
+
+    /** Deletes the repository. */
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixture.delete(_dir);
+    }
+
+    /** A changed file staged before each call. */
+    @State(Scope.Thread)
+    public static class Staged {
+
+        /** Changes and stages the first file of the repository of
+         *  BENCH. */
+        @Setup(Level.Invocation)
+        public void stage(HistoryBenchmark bench) {
+            Fixture.write(bench._dir, Fixture.name(0), FILE_SIZE, _random);
+            bench._command.add(Fixture.name(0));
+        }
+
+        /** Source of the new contents. */
+        private Random _random = new Random(1);
+    }
+
+    /** A fresh copy of the repository for each call. */
+    @State(Scope.Thread)
+    public static class Copy {
+
+        /** Copies the repository of BENCH and loads the state of the
+         *  copy. */
+        @Setup(Level.Invocation)
+        public void copy(HistoryBenchmark bench) throws IOException {
+            _dir = Fixture.copy(bench._dir);
+            _command = Fixture.load();
+        }
+
+        /** Deletes the copy. */
+        @TearDown(Level.Invocation)
+        public void delete() throws IOException {
+            Fixture.delete(_dir);
+        }
+
+        /** The copy. */
+        private File _dir;
+        /** State of the copy. */
+        private Command _command;
+    }
+
+    /** Commits a staged change. */
+    @Benchmark
+    public void commit(Staged staged) {
+        _command.commit("bench change");
+    }
+
+    /** Prints the history of master. */
+    @Benchmark
+    public void log() {
+        _command.log("log");
+    }
+
+    /** Finds the split point of master and other. */
+    @Benchmark
+    public Commit splitPoint() {
+        return _command.splitPoint(_command.findBranch("master"),
+                                   _command.findBranch("other"));
+    }
+
+    /** Merges other into master. */
+    @Benchmark
+    public void merge(Copy copy) throws IOException {
+        copy._command.merge("other");
+    }
+
+    /** Size of each file in bytes. */
+    private static final int FILE_SIZE = 1024;
+
+    /** The repository, which is the working directory. */
+    private File _dir;
+    /** State of the repository. */
+    private Command _command;
+}
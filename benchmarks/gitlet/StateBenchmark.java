@@ -0,0 +1,107 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of loading the state of a repository, as every command
+ *  does first, and of saving a change to it, as every command that
+ *  changes it does last.
+ *  @author Amy Kwon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StateBenchmark {
+
+    /** Number of files staged in the state. */
+    @Param({ "0", "100", "1000" })
+    public int staged;
+
+    /** Builds the repository and stages files in it. */
+    @Setup
+    public void setUp() throws IOException {
+        _dir = Fixture.build(Math.max(staged, 1), FILE_SIZE, DEPTH);
+        Fixture.quiet();
+        Command command = Fixture.load();
+        Random random = new Random(staged);
+        for (int i = 0; i < staged; i += 1) {
+            Fixture.write(_dir, Fixture.name(i), FILE_SIZE, random);
+            command.add(Fixture.name(i));
+        }
+        command.save();
+    }
+
+    /** Deletes the repository. */
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixture.delete(_dir);
+    }
+
+    /** A copy of the repository with a change staged in memory before
+     *  each call. */
+    @State(Scope.Thread)
+    public static class Changed {
+
+        /** Copies the repository of BENCH, loads the state of the copy
+         *  and stages a changed file in it. */
+        @Setup(Level.Invocation)
+        public void change(StateBenchmark bench) throws IOException {
+            _dir = Fixture.copy(bench._dir);
+            _command = Fixture.load();
+            Fixture.write(_dir, Fixture.name(0), FILE_SIZE, _random);
+            _command.add(Fixture.name(0));
+        }
+
+        /** Deletes the copy. */
+        @TearDown(Level.Invocation)
+        public void delete() throws IOException {
+            Fixture.delete(_dir);
+        }
+
+        /** Source of the new contents. */
+        private Random _random = new Random(1);
+        /** The copy. */
+        private File _dir;
+        /** State of the copy. */
+        private Command _command;
+    }
+
+    /** Loads the state. */
+    @Benchmark
+    public Command load() {
+        return Fixture.load();
+    }
+
+    /** Saves a staged change. */
+    @Benchmark
+    public void save(Changed changed) {
+        changed._command.save();
+    }
+
+    /** Size of each file in bytes. */
+    private static final int FILE_SIZE = 256;
+    /** Number of commits made after the first. */
+    private static final int DEPTH = 10;
+
+    /** The repository, which is the working directory. */
+    private File _dir;
+}
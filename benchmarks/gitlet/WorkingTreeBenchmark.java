@@ -0,0 +1,99 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the commands that read or write the working files:
+ *  add, status and checking out a branch.
+ *  @author Amy Kwon
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WorkingTreeBenchmark {
+
+    /** Number of files in the repository. */
+    @Param({ "100", "1000" })
+    public int fileCount;
+
+    /** Size of each file in bytes. */
+    @Param({ "1024", "16384" })
+    public int fileSize;
+
+    /** Builds the repository and loads its state. */
+    @Setup
+    public void setUp() throws IOException {
+        _dir = Fixture.build(fileCount, fileSize, DEPTH);
+        Fixture.quiet();
+        _command = Fixture.load();
+    }
+
+    /** Deletes the repository. */
+    @TearDown
+    public void tearDown() throws IOException {
+        Fixture.delete(_dir);
+    }
+
+    /** A file of the repository changed before each call. */
+    @State(Scope.Thread)
+    public static class Changed {
+
+        /** Changes the first file of the repository of BENCH. */
+        @Setup(Level.Invocation)
+        public void change(WorkingTreeBenchmark bench) {
+            Fixture.write(bench._dir, Fixture.name(0), bench.fileSize,
+                          _random);
+        }
+
+        /** Source of the new contents. */
+        private Random _random = new Random(1);
+    }
+
+    /** Stages a changed file. */
+    @Benchmark
+    public void add(Changed changed) {
+        _command.add(Fixture.name(0));
+    }
+
+    /** Prints the status of the repository. */
+    @Benchmark
+    public void status() {
+        _command.status();
+    }
+
+    /** Checks out the other branch, alternating between two. */
+    @Benchmark
+    public void checkoutBranch() throws IOException {
+        _onOther = !_onOther;
+        _command.checkoutBranch(_onOther ? "other" : "master");
+    }
+
+    /** Number of commits made on master after the first. */
+    private static final int DEPTH = 10;
+
+    /** The repository, which is the working directory. */
+    private File _dir;
+    /** State of the repository. */
+    private Command _command;
+    /** Whether branch other is checked out. */
+    private boolean _onOther;
+}
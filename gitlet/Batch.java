@@ -0,0 +1,142 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Runner of a script of commands, started by the batch command, that
+ *  runs them all on one Command and saves it once, at the end.  Each line
+ *  of the script is a command as it would follow gitlet on the command
+ *  line, with double quotes around words holding blanks; blank lines and
+ *  lines starting with # are skipped, and a line reading checkpoint
+ *  saves what was done so far.  A command that fails prints what it would
+ *  have printed on its own and leaves the state as it found it, and the
+ *  script goes on with the next line.
+ *  @author Amy Kwon
+ */
+class Batch {
+
+    /** A runner starting from COMMAND, the state of the repository in
+     *  the working directory, or null if it has none. */
+    Batch(Command command) {
+        _command = command;
+    }
+
+    /** Runs the script named by ARGS, the arguments of the batch command,
+     *  which is read from standard input if it is missing or -, and
+     *  returns the state to save. */
+    Command run(String... args) throws IOException {
+        if (args.length > 2) {
+            throw Utils.error("Incorrect operands.");
+        }
+        BufferedReader script;
+        if (args.length == 1 || args[1].equals("-")) {
+            script = new BufferedReader(new InputStreamReader(System.in,
+                StandardCharsets.UTF_8));
+        } else {
+            try {
+                script = Files.newBufferedReader(Paths.get(args[1]),
+                                                 StandardCharsets.UTF_8);
+            } catch (NoSuchFileException excp) {
+                throw Utils.error("File does not exist.");
+            }
+        }
+        try (BufferedReader in = script) {
+            int number = 0;
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                number += 1;
+                String[] words = words(line);
+                if (words.length > 0 && !words[0].startsWith("#")) {
+                    run(number, words);
+                    System.out.flush();
+                }
+            }
+        }
+        return _command;
+    }
+
+    /** Runs the command ARGS, from line NUMBER of the script. */
+    private void run(int number, String[] args) {
+        if (args[0].equals("checkpoint")) {
+            if (_command != null) {
+                _command.save();
+            }
+            return;
+        } else if (NOT_BATCHED.contains(args[0])) {
+            System.out.println("That command cannot be run in a batch.");
+            return;
+        }
+        Command.Snapshot snapshot =
+            _command == null ? null : _command.snapshot();
+        try {
+            _command = Main.execute(_command, args);
+        } catch (GitletException excp) {
+            if (excp.getMessage() != null) {
+                System.out.println(excp.getMessage());
+            }
+            restore(snapshot);
+        } catch (IOException | RuntimeException excp) {
+            System.err.println("line " + number + ": " + excp);
+            restore(snapshot);
+        }
+    }
+
+    /** Returns the state to SNAPSHOT, if there was any state. */
+    private void restore(Command.Snapshot snapshot) {
+        if (snapshot != null) {
+            _command.restore(snapshot);
+        }
+    }
+
+    /** Returns the words of LINE, which are separated by blanks outside
+     *  double quotes.  Within quotes, a backslash stands for the character
+     *  after it. */
+    static String[] words(String line) {
+        ArrayList<String> result = new ArrayList<String>();
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false, quoted = false;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    quoted = false;
+                } else if (c == '\\' && i + 1 < line.length()) {
+                    i += 1;
+                    word.append(line.charAt(i));
+                } else {
+                    word.append(c);
+                }
+            } else if (c == '"') {
+                quoted = inWord = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inWord) {
+                    result.add(word.toString());
+                    word.setLength(0);
+                    inWord = false;
+                }
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (inWord) {
+            result.add(word.toString());
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /** Commands that cannot be run in a batch. */
+    private static final List<String> NOT_BATCHED =
+        Arrays.asList("batch", "daemon", "serve");
+
+    /** State of the repository, or null if it has none yet. */
+    private Command _command;
+}
@@ -8,13 +8,27 @@ import java.io.Serializable;
  */
 public class Blob implements Serializable {
 
-    /** Blob constructor that takes in file
-     * and stores hash id and content of the FILE.
+    /** Blob constructor that takes in file and stores the hash id of the
+     * FILE.  The contents are hashed as raw bytes through a fixed-size
+     * buffer and are only copied into the ObjectStore when the blob is
+     * stored, so the file never has to fit in memory.
      */
     public Blob(File file) {
-        String content = Utils.readContentsAsString(file);
-        _hash = Utils.sha1(file.getName() + content);
-        _content = content;
+        _hash = Utils.sha1(file, file.getName());
+        _source = file;
+    }
+
+    /** Blob constructor for the FILE whose hash id, HASH, is already
+     * known. */
+    public Blob(File file, String hash) {
+        _hash = hash;
+        _source = file;
+    }
+
+    /** Blob constructor for the blob with HASH that is already in the
+     * ObjectStore. */
+    public Blob(String hash) {
+        _hash = hash;
     }
 
     /** Returns true if the OTHER blob
@@ -28,13 +42,17 @@ public class Blob implements Serializable {
         return _hash;
     }
 
-    /** Returns content of the blob. */
-    public String content() {
-        return _content;
+    /** Returns the file in the working directory the blob was read from.
+     *  Blobs loaded back from a commit or the stage do not carry it; read
+     *  their content from the ObjectStore instead. */
+    public File source() {
+        return _source;
     }
 
     /** Hash of the blob. */
     private String _hash;
-    /** Content of the blob. */
-    private String _content;
+    /** File the content of the blob was read from. */
+    private transient File _source;
+    /** Version of the serialized form of blobs saved before Codec. */
+    private static final long serialVersionUID = -3152749828013331792L;
 }
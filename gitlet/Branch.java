@@ -1,7 +1,6 @@
 package gitlet;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.HashMap;
 
 /** Class that stores the name and head commit of each branch.
@@ -12,8 +11,38 @@ public class Branch implements Serializable {
     /** Branch constructor that stores the NAME and HEAD commit. */
     public Branch(String name, Commit head) {
         _name = name;
-        _head = head;
+        setHead(head);
         _removed = new HashMap<String, Blob>();
+        _changed = true;
+    }
+
+    /** A branch read from the record IN. */
+    private Branch(Codec.Reader in) {
+        _name = in.readString();
+        _headHash = in.readHash();
+        _removed = in.readBlobs();
+    }
+
+    /** Returns the branch whose stored form is CONTENTS. */
+    static Branch decode(byte[] contents) {
+        if (Codec.isLegacy(contents)) {
+            return Utils.deserialize(contents, Branch.class);
+        }
+        return new Branch(new Codec.Reader(contents, Codec.BRANCH));
+    }
+
+    /** Returns the stored form of the branch. */
+    byte[] encode() {
+        Codec.Writer out = new Codec.Writer(Codec.BRANCH);
+        out.writeString(_name);
+        out.writeHash(_headHash);
+        out.writeBlobs(_removed);
+        return out.toByteArray();
+    }
+
+    /** Use STORE to load the head commit on demand. */
+    void attach(ObjectStore store) {
+        _store = store;
     }
 
     /** Returns the name of the branch. */
@@ -23,24 +52,22 @@ public class Branch implements Serializable {
 
     /** Returns the head commit of the branch. */
     public Commit head() {
+        if (_head == null && _store != null) {
+            _head = _store.readCommit(_headHash);
+        }
         return _head;
     }
 
+    /** Returns the hash of the head commit of the branch. */
+    public String headHash() {
+        return _headHash;
+    }
+
     /** Set the head commit of the branch with the given COMMIT. */
     public void setHead(Commit commit) {
         _head = commit;
-    }
-
-    /** Returns all the hashs the branch has. */
-    public ArrayList<String> getAllHashs() {
-        ArrayList<String> allHash = new ArrayList<String>();
-        Commit pointer = _head;
-        while (pointer != null) {
-            String hash = pointer.getHash();
-            allHash.add(hash);
-            pointer = pointer.getParent();
-        }
-        return allHash;
+        _headHash = commit.getHash();
+        _changed = true;
     }
 
     /** Returns all the removed files in the branch. */
@@ -51,17 +78,38 @@ public class Branch implements Serializable {
     /** Add the FILENAME and BLOB to the removed list. */
     public void addtoRemoved(String fileName, Blob blob) {
         _removed.put(fileName, blob);
+        _changed = true;
     }
 
     /** Add the FILENAME to the removed list. */
     public void removefromRemove(String fileName) {
-        _removed.remove(fileName);
+        _changed |= _removed.remove(fileName) != null;
+    }
+
+    /** Returns true if the branch was made or changed since it was
+     *  read. */
+    boolean changed() {
+        return _changed;
+    }
+
+    /** Records whether the branch differs from the one written, which
+     *  is CHANGED. */
+    void setChanged(boolean changed) {
+        _changed = changed;
     }
 
     /** Name of the branch. */
     private String _name;
-    /** Head commit of the branch. */
-    private Commit _head;
+    /** Hash of the head commit of the branch. */
+    private String _headHash;
+    /** Head commit of the branch, loaded on demand. */
+    private transient Commit _head;
+    /** Store the head commit is loaded from. */
+    private transient ObjectStore _store;
     /** All removed files within the branch. */
     private HashMap<String, Blob> _removed;
+    /** Whether the branch was made or changed since it was read. */
+    private transient boolean _changed;
+    /** Version of the serialized form of branches saved before Codec. */
+    private static final long serialVersionUID = 7415750585536553324L;
 }
@@ -0,0 +1,294 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Compact binary encoding of the commits, manifest nodes, branches,
+ *  state, stat cache and commit graph of a repository, read and written
+ *  field by field without reflection.  A record starts with MAGIC, a
+ *  byte naming its kind and its version as a varint, followed by its
+ *  fields in a fixed order: integers as varints, booleans as a byte,
+ *  hashes as a length byte and their raw bytes, and strings as a varint
+ *  tag that is 0 for null, 1 for a new string, which follows as its
+ *  UTF-8 length and bytes, and 2 + N for the Nth string already written
+ *  in the record, so a name or message repeated within a record is
+ *  written once.  Later versions only add fields at the end of a
+ *  record, which older readers ignore.
+ *
+ *  Records written by Java serialization, before this encoding, start
+ *  with a different byte and are still read by the decoders.
+ *  @author Amy Kwon
+ */
+class Codec {
+
+    /** Returns true if CONTENTS were written by Java serialization. */
+    static boolean isLegacy(byte[] contents) {
+        return contents.length >= 2 && contents[0] == (byte) 0xac
+            && contents[1] == (byte) 0xed;
+    }
+
+    /** Writer of one record. */
+    static class Writer {
+
+        /** A writer of a record of KIND, in the current version. */
+        Writer(byte kind) {
+            _bytes = new byte[INITIAL_SIZE];
+            writeByte(MAGIC);
+            writeByte(kind);
+            writeVarint(VERSION);
+        }
+
+        /** Writes the byte B. */
+        void writeByte(int b) {
+            ensure(1);
+            _bytes[_size] = (byte) b;
+            _size += 1;
+        }
+
+        /** Writes VALUE, which must not be negative, in as few bytes as
+         *  it needs, seven bits to a byte. */
+        void writeVarint(long value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("negative varint");
+            }
+            while (value >= 0x80) {
+                writeByte((int) (value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        /** Writes VALUE. */
+        void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        /** Writes the string VALUE, which may be null. */
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            Integer index = _strings.get(value);
+            if (index != null) {
+                writeVarint(2 + index);
+                return;
+            }
+            _strings.put(value, _strings.size());
+            byte[] utf = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(1);
+            writeVarint(utf.length);
+            ensure(utf.length);
+            System.arraycopy(utf, 0, _bytes, _size, utf.length);
+            _size += utf.length;
+        }
+
+        /** Writes the hash HASH, which may be null. */
+        void writeHash(String hash) {
+            if (hash == null) {
+                writeByte(0);
+                return;
+            }
+            byte[] raw = Pack.toRaw(hash);
+            writeByte(raw.length);
+            ensure(raw.length);
+            System.arraycopy(raw, 0, _bytes, _size, raw.length);
+            _size += raw.length;
+        }
+
+        /** Writes the names and hashes of BLOBS, which may be null, as is
+         *  any blob in it. */
+        void writeBlobs(Map<String, Blob> blobs) {
+            if (blobs == null) {
+                writeVarint(0);
+                return;
+            }
+            writeVarint(blobs.size() + 1);
+            for (Map.Entry<String, Blob> entry : blobs.entrySet()) {
+                writeString(entry.getKey());
+                Blob blob = entry.getValue();
+                writeHash(blob == null ? null : blob.hash());
+            }
+        }
+
+        /** Writes the keys and values of MAP. */
+        void writeStrings(Map<String, String> map) {
+            writeVarint(map.size());
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+
+        /** Returns the record written. */
+        byte[] toByteArray() {
+            return Arrays.copyOf(_bytes, _size);
+        }
+
+        /** Makes room for N more bytes. */
+        private void ensure(int n) {
+            if (_size + n > _bytes.length) {
+                _bytes = Arrays.copyOf(_bytes,
+                                       Math.max(_size + n, 2 * _bytes.length));
+            }
+        }
+
+        /** Bytes written so far, followed by spare room. */
+        private byte[] _bytes;
+        /** Number of bytes written. */
+        private int _size;
+        /** Strings written so far, mapped to their order of writing. */
+        private HashMap<String, Integer> _strings =
+            new HashMap<String, Integer>();
+    }
+
+    /** Reader of one record. */
+    static class Reader {
+
+        /** A reader of CONTENTS, which must be a record of KIND. */
+        Reader(byte[] contents, byte kind) {
+            _bytes = contents;
+            if (readByte() != MAGIC || readByte() != kind) {
+                throw new IllegalArgumentException("not a record of kind "
+                                                   + kind);
+            }
+            _version = (int) readVarint();
+        }
+
+        /** Returns the version the record was written in. */
+        int version() {
+            return _version;
+        }
+
+        /** Returns the next byte. */
+        byte readByte() {
+            if (_pos >= _bytes.length) {
+                throw new IllegalArgumentException("truncated record");
+            }
+            _pos += 1;
+            return _bytes[_pos - 1];
+        }
+
+        /** Returns the next varint. */
+        long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("bad varint");
+        }
+
+        /** Returns the next varint, which must fit in an int. */
+        int readInt() {
+            long value = readVarint();
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("bad count " + value);
+            }
+            return (int) value;
+        }
+
+        /** Returns the next boolean. */
+        boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        /** Returns the next string, which may be null. */
+        String readString() {
+            int tag = readInt();
+            if (tag == 0) {
+                return null;
+            } else if (tag > 1) {
+                if (tag - 2 >= _strings.size()) {
+                    throw new IllegalArgumentException("bad string " + tag);
+                }
+                return _strings.get(tag - 2);
+            }
+            int length = readInt();
+            if (length > _bytes.length - _pos) {
+                throw new IllegalArgumentException("truncated record");
+            }
+            String result = new String(_bytes, _pos, length,
+                                       StandardCharsets.UTF_8);
+            _pos += length;
+            _strings.add(result);
+            return result;
+        }
+
+        /** Returns the next hash, which may be null. */
+        String readHash() {
+            int length = readByte() & 0xff;
+            if (length == 0) {
+                return null;
+            }
+            if (length > _bytes.length - _pos) {
+                throw new IllegalArgumentException("truncated record");
+            }
+            byte[] raw = Arrays.copyOfRange(_bytes, _pos, _pos + length);
+            _pos += length;
+            return Pack.toHex(raw);
+        }
+
+        /** Returns the next names and hashes of blobs, which may be
+         *  null. */
+        HashMap<String, Blob> readBlobs() {
+            int count = readInt();
+            if (count == 0) {
+                return null;
+            }
+            HashMap<String, Blob> result = new HashMap<String, Blob>();
+            for (count -= 1; count > 0; count -= 1) {
+                String name = readString();
+                String hash = readHash();
+                result.put(name, hash == null ? null : new Blob(hash));
+            }
+            return result;
+        }
+
+        /** Returns the next keys and values of a map of strings. */
+        HashMap<String, String> readStrings() {
+            HashMap<String, String> result = new HashMap<String, String>();
+            for (int n = readInt(); n > 0; n -= 1) {
+                String key = readString();
+                result.put(key, readString());
+            }
+            return result;
+        }
+
+        /** The record. */
+        private byte[] _bytes;
+        /** Position of the next byte to read. */
+        private int _pos;
+        /** Version the record was written in. */
+        private int _version;
+        /** Strings read so far, in order. */
+        private ArrayList<String> _strings = new ArrayList<String>();
+    }
+
+    /** Record of a commit. */
+    static final byte COMMIT = 1;
+    /** Record of a node of a manifest. */
+    static final byte TREE = 2;
+    /** Record of a branch. */
+    static final byte BRANCH = 3;
+    /** Record of the state of a repository. */
+    static final byte STATE = 4;
+    /** Record of the stat cache of the working files. */
+    static final byte STAT_CACHE = 5;
+    /** Record of the commit graph. */
+    static final byte COMMIT_GRAPH = 6;
+
+    /** First byte of every record. */
+    static final byte MAGIC = 'g';
+    /** Version of the records written. */
+    static final int VERSION = 1;
+
+    /** Size a writer starts with. */
+    private static final int INITIAL_SIZE = 256;
+}
@@ -1,39 +1,429 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
-/** Class that runs commands as methods and store the entire data.
+/** Class that runs commands as methods.  Only the stage, the name of
+ *  the current branch and the remotes are saved with it; commits and
+ *  blobs live in the ObjectStore and branches in Refs, and are loaded
+ *  only when a command needs them.
  *  @author Amy Kwon
  */
 public class Command implements Serializable {
 
     /** Command constructor used to load and save data. */
     public Command() throws IOException {
+        open();
         _repo.mkdir();
         File read = new File(_repo, "data");
-        read.createNewFile();
+        _store.init();
+        _refs.init();
         _stage = new Stage();
-        _branches = new ArrayList<Branch>();
-        _commits = new ArrayList<Commit>();
         _remote = new HashMap<String, String>();
         Commit init = new Commit("initial commit", null, null);
-        _commits.add(init);
+        _store.putCommit(init);
+        _newCommits.add(init.getHash());
         Branch master = new Branch("master", init);
+        _loaded.put(master.name(), master);
+        _currName = master.name();
         _currBranch = master;
-        _branches.add(master);
+        Journal.writeDurably(read, encode());
+        mark();
+    }
+
+    /** A Command whose state is read from the record IN. */
+    private Command(Codec.Reader in) {
+        open();
+        decode(in);
+    }
+
+    /** Sets the state of the repository to the one in the record IN. */
+    private void decode(Codec.Reader in) {
+        _stage = new Stage(in);
+        _currName = in.readString();
+        _fetched = in.readBoolean();
+        _remote = in.readStrings();
+    }
+
+    /** Returns the record of the state of the repository. */
+    private byte[] encode() {
+        Codec.Writer out = new Codec.Writer(Codec.STATE);
+        _stage.encode(out);
+        out.writeString(_currName);
+        out.writeBoolean(_fetched);
+        out.writeStrings(_remote);
+        return out.toByteArray();
+    }
+
+    /** Returns the Command whose state was checkpointed in DATA, with the
+     *  changes journaled since replayed over it. */
+    static Command load(File data) {
+        byte[] contents = Utils.readContents(data);
+        Command command = Codec.isLegacy(contents)
+            ? Utils.deserialize(contents, Command.class)
+            : new Command(new Codec.Reader(contents, Codec.STATE));
+        for (byte[] record : command._journal.records()) {
+            command.replay(record);
+        }
+        command._currBranch = command.findBranch(command._currName);
+        command.mark();
+        return command;
+    }
+
+    /** Restores the fields that are not serialized from IN. */
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        open();
+    }
+
+    /** Sets up the repository of the current working directory. */
+    private void open() {
+        _dir = new File(System.getProperty("user.dir"));
+        _repo = new File(_dir, ".gitlet");
+        _store = new ObjectStore(_repo);
+        _refs = new Refs(_repo, _store);
+        _loaded = new HashMap<String, Branch>();
+        _newCommits = new ArrayList<String>();
+        _statCache = null;
+        _graph = null;
+        _commitIndex = null;
+        _messageIndex = null;
+        _indexedCommits = 0;
+        _journal = new Journal(_repo);
+    }
+
+    /** Returns a copy of the state as it is now, which restore returns
+     *  to. */
+    Snapshot snapshot() {
+        Snapshot result = new Snapshot();
+        result._state = encode();
+        for (Branch branch : _loaded.values()) {
+            result._branches.put(branch.name(), branch.encode());
+            if (branch.changed()) {
+                result._changed.add(branch.name());
+            }
+        }
+        result._newCommits = _newCommits.size();
+        return result;
+    }
+
+    /** Returns the state to SNAPSHOT, dropping everything done since it
+     *  was taken but the objects stored and the files written. */
+    void restore(Snapshot snapshot) {
+        decode(new Codec.Reader(snapshot._state, Codec.STATE));
+        _loaded.clear();
+        for (Map.Entry<String, byte[]> entry
+                 : snapshot._branches.entrySet()) {
+            Branch branch = Branch.decode(entry.getValue());
+            branch.attach(_store);
+            branch.setChanged(snapshot._changed.contains(entry.getKey()));
+            _loaded.put(entry.getKey(), branch);
+        }
+        while (_newCommits.size() > snapshot._newCommits) {
+            _newCommits.remove(_newCommits.size() - 1);
+        }
+        if (_indexedCommits > _newCommits.size()) {
+            _messageIndex = null;
+        }
+        _currBranch = findBranch(_currName);
+    }
+
+    /** State of a Command at some point, taken by snapshot. */
+    static class Snapshot {
+        /** Record of the state of the repository. */
+        private byte[] _state;
+        /** Branches loaded, by name. */
+        private HashMap<String, byte[]> _branches =
+            new HashMap<String, byte[]>();
+        /** Names of the branches loaded that were not written yet. */
+        private HashSet<String> _changed = new HashSet<String>();
+        /** Number of commits made that were not saved yet. */
+        private int _newCommits;
+    }
+
+    /** Remembers the state as it is now, so that save can tell what
+     *  changed. */
+    private void mark() {
+        _savedAddition = hashes(_stage.getAddition());
+        _savedRemoval = hashes(_stage.getRemoval());
+        _savedName = _currName;
+        _savedFetched = _fetched;
+        _savedRemote = new HashMap<String, String>(_remote);
+    }
+
+    /** Returns the names and hashes of BLOBS, with an empty hash for a
+     *  missing blob. */
+    private static HashMap<String, String> hashes(Map<String, Blob> blobs) {
+        HashMap<String, String> result = new HashMap<String, String>();
+        for (Map.Entry<String, Blob> blob : blobs.entrySet()) {
+            Blob value = blob.getValue();
+            result.put(blob.getKey(), value == null ? "" : value.hash());
+        }
+        return result;
+    }
+
+    /** Returns the blob with HASH, or null if HASH is empty. */
+    private static Blob blob(String hash) {
+        return hash.isEmpty() ? null : new Blob(hash);
+    }
+
+    /** Returns the journal record of the changes to the state since it
+     *  was last marked, which is empty if nothing changed.  A record is
+     *  a sequence of operations, each a byte followed by its operands,
+     *  and setting a value to what it already is changes nothing, so a
+     *  record may be replayed more than once. */
+    private byte[] changes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            changes(out, ADD, UNADD, _savedAddition,
+                    hashes(_stage.getAddition()));
+            changes(out, REMOVE, UNREMOVE, _savedRemoval,
+                    hashes(_stage.getRemoval()));
+            changes(out, REMOTE, UNREMOTE, _savedRemote, _remote);
+            if (!_currName.equals(_savedName)) {
+                out.writeByte(BRANCH);
+                out.writeUTF(_currName);
+            }
+            if (_fetched != _savedFetched) {
+                out.writeByte(FETCHED);
+                out.writeBoolean(_fetched);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Writes to OUT the operations turning the map BEFORE into AFTER:
+     *  PUT with the key and value of each entry added or changed, and
+     *  DELETE with the key of each entry removed. */
+    private static void changes(DataOutputStream out, byte put, byte delete,
+                                Map<String, String> before,
+                                Map<String, String> after)
+        throws IOException {
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                out.writeByte(put);
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                out.writeByte(delete);
+                out.writeUTF(key);
+            }
+        }
+    }
+
+    /** Applies the changes of the journal record RECORD to the state. */
+    private void replay(byte[] record) {
+        DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(record));
+        try {
+            while (in.available() > 0) {
+                byte op = in.readByte();
+                switch (op) {
+                case ADD:
+                    _stage.add(in.readUTF(), blob(in.readUTF()));
+                    break;
+                case UNADD:
+                    _stage.removeFromAdd(in.readUTF());
+                    break;
+                case REMOVE:
+                    _stage.remove(in.readUTF(), blob(in.readUTF()));
+                    break;
+                case UNREMOVE:
+                    _stage.removeFromRemove(in.readUTF());
+                    break;
+                case REMOTE:
+                    _remote.put(in.readUTF(), in.readUTF());
+                    break;
+                case UNREMOTE:
+                    _remote.remove(in.readUTF());
+                    break;
+                case BRANCH:
+                    _currName = in.readUTF();
+                    break;
+                case FETCHED:
+                    _fetched = in.readBoolean();
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                        "bad journal operation " + op);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Saves the branches this command changed, the commits it made and
+     *  the changes to the rest of its state into .gitlet.  The state is
+     *  only journaled, and checkpointed once the journal is full, so a
+     *  command that changes nothing writes nothing but the caches it
+     *  refreshed.  Saving again only writes what changed since, so the
+     *  same Command may run several commands. */
+    void save() {
+        for (Branch branch : _loaded.values()) {
+            if (branch.changed()) {
+                _refs.write(branch);
+                branch.setChanged(false);
+            }
+        }
+        if (!_newCommits.isEmpty()) {
+            commitIndex().add(_newCommits);
+            StringBuilder all = new StringBuilder();
+            for (String hash : _newCommits) {
+                all.append(hash).append('\n');
+            }
+            try {
+                Files.write(new File(_repo, "commits").toPath(),
+                        all.toString().getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            if (_messageIndex != null) {
+                messageIndex();
+            }
+            _newCommits.clear();
+            _indexedCommits = 0;
+        }
+        if (_statCache != null) {
+            _statCache.save(new File(_repo, "index"));
+        }
+        if (_graph != null) {
+            _graph.save(new File(_repo, "commit-graph"));
+        }
+        if (_messageIndex != null) {
+            _messageIndex.save();
+        }
+        byte[] record = changes();
+        if (record.length > 0) {
+            _journal.append(record);
+            if (_journal.full()) {
+                _journal.checkpoint(new File(_repo, "data"), encode());
+            }
+            mark();
+        }
+    }
+
+    /** Returns the commit graph, loading it first if needed. */
+    CommitGraph graph() {
+        if (_graph == null) {
+            _graph = CommitGraph.load(new File(_repo, "commit-graph"),
+                                      _store);
+        }
+        return _graph;
+    }
+
+    /** Returns the stat cache of the working files, loading it first if
+     *  needed. */
+    StatCache statCache() {
+        if (_statCache == null) {
+            _statCache = StatCache.load(new File(_repo, "index"));
+        }
+        return _statCache;
+    }
+
+    /** Returns the branch checked out. */
+    Branch currentBranch() {
+        return _currBranch;
+    }
+
+    /** Returns the store of the objects of the repository. */
+    ObjectStore store() {
+        return _store;
+    }
+
+    /** Returns the hashes of all commits made so far, oldest first. */
+    List<String> allCommits() {
+        List<String> result = savedCommits();
+        result.addAll(_newCommits);
+        return result;
+    }
+
+    /** Returns the hashes of the commits made by earlier commands, oldest
+     *  first. */
+    List<String> savedCommits() {
+        return savedCommits(0);
+    }
+
+    /** Returns the hashes of the commits made by earlier commands, oldest
+     *  first, but for the first FROM of them.  Every line of the commits
+     *  file is an id and a newline, so the lines skipped are not read. */
+    List<String> savedCommits(int from) {
+        ArrayList<String> result = new ArrayList<String>();
+        File commits = new File(_repo, "commits");
+        if (!commits.exists()) {
+            return result;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(commits, "r")) {
+            long start = (long) from * (Utils.UID_LENGTH + 1);
+            if (start >= in.length()) {
+                return result;
+            }
+            byte[] tail = new byte[(int) (in.length() - start)];
+            in.seek(start);
+            in.readFully(tail);
+            for (String line
+                     : new String(tail, StandardCharsets.UTF_8).split("\n")) {
+                if (!line.isEmpty()) {
+                    result.add(line);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Returns the index of commit ids, building it first if needed. */
+    CommitIndex commitIndex() {
+        if (_commitIndex == null) {
+            _commitIndex = new CommitIndex(new File(_repo, "objects"));
+            if (!_commitIndex.exists()) {
+                _commitIndex.rebuild(savedCommits());
+            }
+        }
+        return _commitIndex;
+    }
+
+    /** Returns all commits made so far, oldest first. */
+    List<Commit> commits() {
+        ArrayList<Commit> result = new ArrayList<Commit>();
+        for (String hash : allCommits()) {
+            result.add(_store.readCommit(hash));
+        }
+        return result;
     }
 
     /** Add new changes of the FILENAME from the stage. */
     void add(String fileName) {
         File add = new File(_dir, fileName);
         if (add.exists()) {
-            Blob change = new Blob(add);
+            Blob change = new Blob(add, statCache().hash(add));
+            _store.putBlob(change);
             Commit currHead = _currBranch.head();
             if (_stage.getAddition().containsKey(fileName)) {
                 _stage.overwrite(fileName, change);
@@ -63,16 +453,14 @@ public class Command implements Serializable {
                 _stage.add(fileName, change);
             }
         } else {
-            System.out.println("File does not exist.");
-            System.exit(0);
+            throw Utils.error("File does not exist.");
         }
     }
 
     /** Commits the changes from the stage with the MESSAGE. */
     void commit(String message) {
         if (message.equals("")) {
-            System.out.println("Please enter a commit message.");
-            System.exit(0);
+            throw Utils.error("Please enter a commit message.");
         }
         if (message.length() > 4) {
             int i = message.indexOf(' ');
@@ -81,8 +469,7 @@ public class Command implements Serializable {
                 boolean addEmp = _stage.getAddition().isEmpty();
                 boolean remEmp = _stage.getRemoval().isEmpty();
                 if (addEmp && remEmp) {
-                    System.out.println("No changes added to the commit.");
-                    System.exit(0);
+                    throw Utils.error("No changes added to the commit.");
                 }
             }
         }
@@ -91,10 +478,14 @@ public class Command implements Serializable {
         commit.setMessage(message);
         commit.setTimestamp();
         commit.setBlobs(_stage.getAddition());
+        commit.setTree(Tree.update(_store, currHead.getTree(),
+                _stage.getAddition(), _stage.getRemoval().keySet()));
         commit.setParent(currHead);
-        commit.setHash(commit.getMessage() + commit.getTimestamp());
+        commit.setHash(commit.getParentHash() + commit.getTree()
+                       + commit.getMessage() + commit.getTimestamp());
         _currBranch.setHead(commit);
-        _commits.add(commit);
+        _store.putCommit(commit);
+        _newCommits.add(commit.getHash());
         _stage = new Stage();
     }
 
@@ -103,8 +494,7 @@ public class Command implements Serializable {
         Commit currHead = _currBranch.head();
         boolean staged = _stage.getAddition().containsKey(fileName);
         if (currHead.getBlobs() == null && !staged) {
-            System.out.println("No reason to remove the file.");
-            System.exit(0);
+            throw Utils.error("No reason to remove the file.");
         }
         if (_stage.getAddition().containsKey(fileName)) {
             _stage.removeFromAdd(fileName);
@@ -113,70 +503,202 @@ public class Command implements Serializable {
             Blob currBlob = currHead.findBlob(fileName);
             _stage.remove(fileName, currBlob);
             _currBranch.addtoRemoved(fileName, currBlob);
-            Utils.restrictedDelete(fileName);
+            Utils.restrictedDelete(new File(_dir, fileName));
         } else {
-            System.out.println("No reason to remove the file.");
-            System.exit(0);
+            throw Utils.error("No reason to remove the file.");
         }
     }
 
-    /** Prints the log of the current commit. */
-    void log() {
+    /** Prints the log of the current commit, paged by ARGS.
+     * Usage: java gitlet.Main log [-n count] [--skip count]. */
+    void log(String... args) {
+        LogSink sink = logSink(args);
         Commit pointer = _currBranch.head();
-        while (pointer != null) {
-            printLog(pointer);
+        while (pointer != null && sink.wanted()) {
+            if (!sink.skip()) {
+                sink.entry(pointer.getHash(), pointer.getTimestamp(),
+                           pointer.getMessage());
+            }
             pointer = pointer.getParent();
         }
+        sink.flush();
     }
 
-    /** Helper function for log and globalLog with the given COMMIT. */
-    void printLog(Commit commit) {
-        System.out.println("===");
-        System.out.println("commit " + commit.getHash());
-        System.out.println("Date: " + commit.getTimestamp());
-        System.out.println(commit.getMessage());
-        System.out.println();
+    /** Prints the log of all commits, paged by ARGS.
+     * Usage: java gitlet.Main global-log [-n count] [--skip count]. */
+    void globalLog(String... args) {
+        LogSink sink = logSink(args);
+        if (sink.wanted()) {
+            messageIndex().entries(sink);
+        }
+        sink.flush();
     }
 
-    /** Prints the log of all commits. */
-    void globalLog() {
-        for (Commit each : _commits) {
-            printLog(each);
+    /** Returns the LogSink for the -n and --skip options in ARGS, which
+     * start after the name of the command. */
+    LogSink logSink(String... args) {
+        int skip = 0, limit = -1;
+        for (int i = 1; i < args.length; i += 2) {
+            int value = -1;
+            if (i + 1 < args.length) {
+                try {
+                    value = Integer.parseInt(args[i + 1]);
+                } catch (NumberFormatException excp) {
+                    value = -1;
+                }
+            }
+            if (value < 0 || !(args[i].equals("-n")
+                               || args[i].equals("--skip"))) {
+                throw Utils.error("Incorrect operands.");
+            }
+            if (args[i].equals("-n")) {
+                limit = value;
+            } else {
+                skip = value;
+            }
         }
+        return new LogSink(skip, limit);
     }
 
-    /** Returns true if the given COMMITMSG exist. */
-    boolean findMsg(String commitMsg) {
-        for (Commit each : _commits) {
-            if (each.getMessage().equals(commitMsg)) {
-                return true;
+    /** Prints the differences named by ARGS in the unified format.
+     * Usages:
+     * java gitlet.Main diff (working files against the stage)
+     * java gitlet.Main diff --staged (the stage against the head commit)
+     * java gitlet.Main diff [commit id] [commit id]. */
+    void diff(String... args) {
+        UnifiedDiff out = new UnifiedDiff();
+        Commit head = _currBranch.head();
+        if (args.length == 1) {
+            TreeMap<String, String> expected =
+                new TreeMap<String, String>(head.getManifest());
+            for (Map.Entry<String, Blob> entry
+                     : _stage.getAddition().entrySet()) {
+                expected.put(entry.getKey(), entry.getValue().hash());
+            }
+            expected.keySet().removeAll(_stage.getRemoval().keySet());
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                File file = new File(_dir, entry.getKey());
+                if (!out.wanted()) {
+                    break;
+                } else if (!file.isFile()) {
+                    out.file(entry.getKey(), blobText(entry.getValue()),
+                             null);
+                } else if (!statCache().hash(file).equals(entry.getValue())) {
+                    out.file(entry.getKey(), blobText(entry.getValue()),
+                             Utils.readContentsAsString(file));
+                }
+            }
+        } else if (args.length == 2 && args[1].equals("--staged")) {
+            TreeMap<String, String[]> changes =
+                new TreeMap<String, String[]>();
+            for (Map.Entry<String, Blob> entry
+                     : _stage.getAddition().entrySet()) {
+                Blob before = head.trackedBlob(entry.getKey());
+                String hash = entry.getValue().hash();
+                if (before == null || !before.hash().equals(hash)) {
+                    changes.put(entry.getKey(), new String[] {
+                        before == null ? null : before.hash(), hash});
+                }
             }
+            for (String name : _stage.getRemoval().keySet()) {
+                Blob before = head.trackedBlob(name);
+                if (before != null) {
+                    changes.put(name, new String[] {before.hash(), null});
+                }
+            }
+            printChanges(changes, out);
+        } else if (args.length == 3) {
+            Commit first = findHash(args[1]), second = findHash(args[2]);
+            if (first == null || second == null) {
+                throw Utils.error("No commit with that id exists.");
+            }
+            TreeMap<String, String[]> changes =
+                new TreeMap<String, String[]>();
+            Tree.diff(_store, first.getTree(), second.getTree(),
+                (name, before, after) ->
+                    changes.put(name, new String[] {before, after}));
+            printChanges(changes, out);
+        } else {
+            throw Utils.error("Incorrect operands.");
         }
-        return false;
+        out.flush();
     }
 
-    /** Prints out the ids of all commits that have the given COMMITMSG. */
-    void find(String commitMsg) {
-        if (findMsg(commitMsg)) {
-            for (Commit each : _commits) {
-                if (each.getMessage().equals(commitMsg)) {
-                    System.out.println(each.getHash());
-                }
+    /** Writes to OUT the differences of CHANGES, which maps the name of
+     * each changed file to its blob hashes before and after, either of
+     * which is null if the file is missing. */
+    void printChanges(TreeMap<String, String[]> changes, UnifiedDiff out) {
+        for (Map.Entry<String, String[]> entry : changes.entrySet()) {
+            if (!out.wanted()) {
+                break;
             }
+            out.file(entry.getKey(), blobText(entry.getValue()[0]),
+                     blobText(entry.getValue()[1]));
+        }
+    }
+
+    /** Returns the contents of the blob with HASH, or null if HASH is
+     * null. */
+    String blobText(String hash) {
+        return hash == null ? null : _store.readBlobAsString(hash);
+    }
+
+    /** Returns true if the given COMMITMSG exist. */
+    boolean findMsg(String commitMsg) {
+        return !messageIndex().exact(commitMsg).isEmpty();
+    }
+
+    /** Prints out the ids of all commits found with ARGS.
+     * Usages:
+     * java gitlet.Main find [commit message]
+     * java gitlet.Main find --words [words]
+     * java gitlet.Main find --grep [text]. */
+    void find(String... args) {
+        MessageIndex index = messageIndex();
+        List<String> found = null;
+        if (args.length == 2) {
+            found = index.exact(args[1]);
+        } else if (args.length == 3 && args[1].equals("--words")) {
+            found = index.words(args[2]);
+        } else if (args.length == 3 && args[1].equals("--grep")) {
+            found = index.containing(args[2]);
         } else {
-            System.out.println("Found no commit with that message.");
-            System.exit(0);
+            throw Utils.error("Incorrect operands.");
+        }
+        if (found.isEmpty()) {
+            throw Utils.error("Found no commit with that message.");
+        }
+        for (String hash : found) {
+            System.out.println(hash);
         }
     }
 
+    /** Returns the message index, folding in the commits made since it
+     * was last brought up to date.  When it is loaded, only the commits
+     * saved after it are read from the commits file; after that, only the
+     * ones this Command made and has not indexed yet are added. */
+    MessageIndex messageIndex() {
+        if (_messageIndex == null) {
+            _messageIndex = new MessageIndex(_repo);
+            for (String hash : savedCommits(_messageIndex.size())) {
+                _messageIndex.add(hash, _store);
+            }
+            _indexedCommits = 0;
+        }
+        for (; _indexedCommits < _newCommits.size(); _indexedCommits += 1) {
+            _messageIndex.add(_newCommits.get(_indexedCommits), _store);
+        }
+        return _messageIndex;
+    }
+
     /** Prints out the status. */
     void status() {
         System.out.println("=== Branches ===");
-        for (Branch each : _branches) {
-            if (each.name().equals(_currBranch.name())) {
-                System.out.println("*" + _currBranch.name());
+        for (String name : branchNames()) {
+            if (name.equals(_currName)) {
+                System.out.println("*" + name);
             } else {
-                System.out.println(each.name());
+                System.out.println(name);
             }
         }
         System.out.println("\n=== Staged Files ===");
@@ -208,22 +730,49 @@ public class Command implements Serializable {
 
     /** Helper function for status. */
     void setUp() {
+        long start = Trace.start();
         Commit currHead = _currBranch.head();
         HashMap<String, Blob> trackedFiles = currHead.getBlobs();
         Commit prevHead = currHead.getParent();
         List<String> allFiles = Utils.plainFilenamesIn(_dir);
         if (allFiles != null) {
-            for (String name : allFiles) {
-                setUpHelper(name, trackedFiles, currHead, prevHead);
-            }
+            statCache();
+            boolean prevRoot = prevHead != null
+                && prevHead.getParent() == null;
+            StatusScan scan = new StatusScan(this, allFiles,
+                    trackedFiles, currHead, prevHead, prevRoot);
+            scan.run(parallelism());
+            scan.collect(_modified, _untracked);
         }
         deleted(trackedFiles);
+        Trace.stop(Trace.SCAN, start);
     }
 
-    /** Helper function for setup using
-     * NAME, TRACKEDFILES, CURRHEAD, PREVHEAD. */
+    /** Returns the number of threads status scans the working directory
+     *  with, taken from the gitlet.parallelism property or the
+     *  GITLET_PARALLELISM environment variable and defaulting to the
+     *  number of processors. */
+    static int parallelism() {
+        String value = System.getProperty("gitlet.parallelism",
+                System.getenv("GITLET_PARALLELISM"));
+        if (value != null) {
+            try {
+                return Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException excp) {
+                return 1;
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Helper function for setup using NAME, TRACKEDFILES, CURRHEAD,
+     * PREVHEAD and PREVROOT, which is true if PREVHEAD is the initial
+     * commit, adding what it finds to MODIFIED and UNTRACKED.  Only
+     * reads shared state, and loads no commits, so it may run for many
+     * files at once. */
     void setUpHelper(String name, HashMap<String, Blob> trackedFiles,
-                     Commit currHead, Commit prevHead) {
+                     Commit currHead, Commit prevHead, boolean prevRoot,
+                     List<String> modified, List<String> untracked) {
         File file = new File(_dir, name);
         boolean tracked = false, stagedAdd = false;
         boolean stagedRemove = false;
@@ -245,35 +794,34 @@ public class Command implements Serializable {
         boolean case4 = !stagedRemove && tracked && deleted;
         if (prevHead == null) {
             if (case2) {
-                _modified.add(name + " (modified)");
+                modified.add(name + " (modified)");
             }
             if (!tracked && !stagedAdd) {
-                _untracked.add(name);
+                untracked.add(name);
             }
-        } else if (prevHead.getParent() == null) {
+        } else if (prevRoot) {
             boolean case1 = tracked && diff && !stagedAdd;
             boolean case5 = tracked && diffHash(file, currHead.findBlob(name));
             if (case1 || case2 || case5) {
-                _modified.add(name + " (modified)");
+                modified.add(name + " (modified)");
             }
             if (!tracked && !stagedAdd) {
-                _untracked.add(name);
+                untracked.add(name);
             }
         } else {
             Blob prevBlob = prevHead.findBlob(name);
             boolean prevChanged = diffHash(file, prevBlob);
             boolean case1 = tracked && prevChanged && !stagedAdd;
             if (case1 || case2) {
-                _modified.add(name + " (modified)");
+                modified.add(name + " (modified)");
             }
-            boolean merged = Utils.readContentsAsString
-                    (file).contains("<<<<<<< HEAD");
-            if (!tracked && prevChanged && !merged) {
-                _untracked.add(name);
+            if (!tracked && prevChanged && !Utils.readContentsAsString
+                    (file).contains("<<<<<<< HEAD")) {
+                untracked.add(name);
             }
         }
         if (case3 || case4) {
-            _modified.add(name + " (deleted)");
+            modified.add(name + " (deleted)");
         }
     }
 
@@ -291,12 +839,10 @@ public class Command implements Serializable {
 
     /** Returns true if the has of the FILE and BLOB matches. */
     boolean diffHash(File file, Blob blob) {
-        Blob original = new Blob(file);
-
         if (blob == null) {
             return false;
         }
-        String originHash = original.hash();
+        String originHash = statCache().hash(file);
         String hash = blob.hash();
         return !originHash.equals(hash);
     }
@@ -311,21 +857,18 @@ public class Command implements Serializable {
             if (args[1].equals("--")) {
                 checkoutFile(args[2]);
             } else {
-                System.out.println("Incorrect operands.");
-                System.exit(0);
+                throw Utils.error("Incorrect operands.");
             }
         } else if (args.length == 4) {
             if (args[2].equals("--")) {
                 checkoutWithId(args[1], args[3]);
             } else {
-                System.out.println("Incorrect operands.");
-                System.exit(0);
+                throw Utils.error("Incorrect operands.");
             }
         } else if (args.length == 2) {
             checkoutBranch(args[1]);
         } else {
-            System.out.println("Invalid input format");
-            System.exit(0);
+            throw Utils.error("Invalid input format");
         }
     }
 
@@ -337,11 +880,10 @@ public class Command implements Serializable {
         if (tracked.containsKey(fileName)) {
             Blob blob = currCommit.findBlob(fileName);
             if (blob != null) {
-                Utils.writeContents(file, blob.content());
+                _store.writeBlob(blob.hash(), file);
             }
         } else {
-            System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            throw Utils.error("File does not exist in that commit.");
         }
     }
 
@@ -349,13 +891,11 @@ public class Command implements Serializable {
     void checkoutWithId(String hash, String fileName) throws IOException {
         Commit commit = findHash(hash);
         if (commit == null) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
+            throw Utils.error("No commit with that id exists.");
         }
         HashMap<String, Blob> tracked = commit.getBlobs();
         if (!tracked.containsKey(fileName)) {
-            System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            throw Utils.error("File does not exist in that commit.");
         }
         File file = new File(_dir, fileName);
         Blob blob = commit.findBlob(fileName);
@@ -363,7 +903,7 @@ public class Command implements Serializable {
             if (!file.exists()) {
                 file.createNewFile();
             }
-            Utils.writeContents(file, blob.content());
+            _store.writeBlob(blob.hash(), file);
         }
     }
 
@@ -371,16 +911,16 @@ public class Command implements Serializable {
     void checkoutBranch(String branchName) throws IOException {
         Branch branch = findBranch(branchName);
         if (branch == null) {
-            System.out.println("No such branch exists.");
-            System.exit(0);
+            throw Utils.error("No such branch exists.");
         } else if (branchName.equals(_currBranch.name())) {
-            System.out.println("No need to checkout the current branch.");
-            System.exit(0);
+            throw Utils.error("No need to checkout the current branch.");
         }
         Commit ckoutCommit = branch.head();
         HashMap<String, Blob> ckoutTracked = ckoutCommit.getBlobs();
         Commit currCommit = _currBranch.head();
         HashMap<String, Blob> currTracked = currCommit.getBlobs();
+        Materializer plan = new Materializer(_dir, _repo, _store,
+                statCache());
         if (ckoutTracked != null) {
             for (Map.Entry<String, Blob> entry : ckoutTracked.entrySet()) {
                 String fileName = entry.getKey();
@@ -390,23 +930,20 @@ public class Command implements Serializable {
                 if (!removed || ckoutCommit.getMessage().equals("msg1")) {
                     if (file.exists()) {
                         untrackedOverwrite(currTracked, fileName, blob);
-                    } else {
-                        file.createNewFile();
                     }
-                    Utils.writeContents(file, blob.content());
+                    plan.write(fileName, blob.hash());
                 }
             }
         }
         if (currTracked != null) {
             for (Map.Entry<String, Blob> entry : currTracked.entrySet()) {
                 String fileName = entry.getKey();
-                File file = new File(_dir, fileName);
                 boolean untracked = true;
                 if (ckoutTracked != null) {
                     untracked = !ckoutTracked.containsKey(fileName);
                 }
                 if (untracked) {
-                    Utils.restrictedDelete(file);
+                    plan.delete(fileName);
                 }
             }
         }
@@ -416,15 +953,15 @@ public class Command implements Serializable {
                         getParent().getBlobs();
                 if (all != null) {
                     if (all.containsKey(name)) {
-                        File file = new File(_dir, name);
-                        file.createNewFile();
                         Blob blob = branch.head().getParent().findBlob(name);
-                        Utils.writeContents(file, blob.content());
+                        plan.write(name, blob.hash());
                     }
                 }
             }
         }
+        plan.run(parallelism());
         _currBranch = branch;
+        _currName = branchName;
         _stage = new Stage();
     }
 
@@ -442,42 +979,62 @@ public class Command implements Serializable {
             }
             boolean overwrite = diffHash(file, blob);
             if (untracked && overwrite) {
-                System.out.println("There is an untracked file in"
+                throw Utils.error("There is an untracked file in"
                         + " the way delete it, "
                         + "or add and commit it first.");
-                System.exit(0);
             }
         }
     }
 
-    /** Returns the commit of the given HASH. */
+    /** Returns the commit of the given HASH, which may be abbreviated to
+     * any unique prefix. */
     Commit findHash(String hash) {
-        for (Commit each : _commits) {
-            if (hash.substring(0, 6).equals(each.getHash().substring(0, 6))) {
-                return each;
+        List<String> matches = new ArrayList<String>();
+        for (String each : _newCommits) {
+            if (!hash.isEmpty() && each.startsWith(hash)) {
+                matches.add(each);
             }
         }
-        return null;
+        for (String each : commitIndex().resolve(hash)) {
+            if (!matches.contains(each)) {
+                matches.add(each);
+            }
+        }
+        if (matches.size() > 1) {
+            throw Utils.error("Ambiguous commit id.");
+        }
+        if (matches.isEmpty()) {
+            return null;
+        }
+        return _store.readCommit(matches.get(0));
     }
 
     /** Returns the Branch with the given BRANCHNAME. */
     Branch findBranch(String branchName) {
-        for (Branch each : _branches) {
-            if (each.name().equals(branchName)) {
-                return each;
+        Branch branch = _loaded.get(branchName);
+        if (branch == null) {
+            branch = _refs.read(branchName);
+            if (branch != null) {
+                _loaded.put(branchName, branch);
             }
         }
-        return null;
+        return branch;
+    }
+
+    /** Returns the names of all branches in lexicographic order. */
+    List<String> branchNames() {
+        TreeSet<String> names = new TreeSet<String>(_refs.names());
+        names.addAll(_loaded.keySet());
+        return new ArrayList<String>(names);
     }
 
     /** Creates new branch with the BRANCHNAME. */
     void branch(String branchName) {
         if (findBranch(branchName) == null) {
             Branch newBranch = new Branch(branchName, _currBranch.head());
-            _branches.add(newBranch);
+            addBranch(newBranch);
         } else {
-            System.out.println("A branch with that name already exists.");
-            System.exit(0);
+            throw Utils.error("A branch with that name already exists.");
         }
     }
 
@@ -485,25 +1042,23 @@ public class Command implements Serializable {
     void removeBranch(String branch) {
         Branch remove = findBranch(branch);
         if (remove == null) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+            throw Utils.error("A branch with that name does not exist.");
         }
         if (_currBranch.name().equals(branch)) {
-            System.out.println("Cannot remove the current branch.");
-            System.exit(0);
+            throw Utils.error("Cannot remove the current branch.");
         }
-        _branches.remove(remove);
+        _loaded.remove(branch);
+        _refs.delete(branch);
     }
 
     /** Checks out all the files tracked by the given commit HASH. */
     void reset(String hash) throws IOException {
         Commit commit = findHash(hash);
         if (_fetched) {
-            System.exit(0);
+            throw new GitletException();
         }
         if (commit == null) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
+            throw Utils.error("No commit with that id exists.");
         }
         boolean untracked = false;
         boolean overwrite = false;
@@ -521,19 +1076,21 @@ public class Command implements Serializable {
             }
         }
         if (untracked && overwrite) {
-            System.out.println("There is an untracked file in the way;"
+            throw Utils.error("There is an untracked file in the way;"
                     + " delete it, or add and commit it first.");
-            System.exit(0);
         }
-        for (String name : tracked.keySet()) {
-            checkoutWithId(hash, name);
+        Materializer plan = new Materializer(_dir, _repo, _store,
+                statCache());
+        for (Map.Entry<String, Blob> entry : tracked.entrySet()) {
+            plan.write(entry.getKey(), entry.getValue().hash());
         }
         HashMap<String, Blob> headTracked = _currBranch.head().getBlobs();
         for (String delete : headTracked.keySet()) {
             if (!tracked.containsKey(delete)) {
-                Utils.restrictedDelete(delete);
+                plan.delete(delete);
             }
         }
+        plan.run(parallelism());
         _currBranch.setHead(commit);
         _stage = new Stage();
     }
@@ -542,35 +1099,30 @@ public class Command implements Serializable {
      * testing with BRANCH, SPLITPOINTHASH, GIVENHEAD, CURRHEAD. */
     void mergeErr(Branch branch) throws IOException {
         if (branch == null) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+            throw Utils.error("A branch with that name does not exist.");
         }
         Commit currHead = _currBranch.head(), givenHead = branch.head();
         boolean stageAdd = !_stage.getAddition().isEmpty();
         boolean stageRemove = !_stage.getRemoval().isEmpty();
         if (stageAdd || stageRemove) {
-            System.out.println("You have uncommitted changes.");
-            System.exit(0);
+            throw Utils.error("You have uncommitted changes.");
         }
         if (_currBranch.name().equals(branch.name())) {
-            System.out.println("Cannot merge a branch with itself.");
-            System.exit(0);
+            throw Utils.error("Cannot merge a branch with itself.");
         }
         String splitPointHash = splitPoint(_currBranch, branch).getHash();
         boolean sameGivenCommit = splitPointHash.equals(givenHead.getHash());
         boolean sameCurrCommit = splitPointHash.equals(currHead.getHash());
         if (sameGivenCommit) {
-            System.out.println("Given branch is an"
+            throw Utils.error("Given branch is an"
                     + " ancestor of the current branch.");
-            System.exit(0);
         }
         if (sameCurrCommit) {
             checkoutBranch(branch.name());
             for (String now : branch.removed().keySet()) {
-                Utils.restrictedDelete(now);
+                Utils.restrictedDelete(new File(_dir, now));
             }
-            System.out.println("Current branch fast-forwarded.");
-            System.exit(0);
+            throw Utils.error("Current branch fast-forwarded.");
         }
     }
 
@@ -598,11 +1150,11 @@ public class Command implements Serializable {
                 if (!inCurr) {
                     if (!inSplitPoint && inGiven) {
                         file.createNewFile();
-                        Utils.writeContents(file, givenBlob.content());
+                        _store.writeBlob(givenBlob.hash(), file);
                         add(fileName);
                     }
                     if (currHead.getMessage().equals("msg3")) {
-                        Utils.writeContents(file, givenBlob.content());
+                        _store.writeBlob(givenBlob.hash(), file);
                         add(fileName);
                     }
                 } else if (!inGiven) {
@@ -619,9 +1171,14 @@ public class Command implements Serializable {
                     boolean conflict3 = !inSplitPoint && !sameContent;
                     conflict = conflict1 || conflict2 || conflict3;
                     if (conflict) {
-                        mergeConflict(currBlob, givenBlob, file);
+                        conflict = mergeConflict(
+                                splitPoint.trackedBlob(fileName),
+                                currBlob, givenBlob, file);
+                        if (!conflict) {
+                            add(fileName);
+                        }
                     } else if (modGiven && !modCurr) {
-                        Utils.writeContents(file, givenBlob);
+                        _store.writeBlob(givenBlob.hash(), file);
                         add(file.getName());
                     }
                 }
@@ -629,14 +1186,15 @@ public class Command implements Serializable {
         }
         checkRemoveGiven(branch);
         boolean conflict4 = removeConflict(branch, splitPoint);
-        boolean conflict5 = edgecase(currTracked, branch);
+        boolean conflict5 = edgecase(currTracked, branch, splitPoint);
         conflict = conflict || conflict4 || conflict5;
         end(conflict, branchName);
     }
 
     /** Return true if it's an edgecase using
-     * CURRTRACKED and GIVEN. */
-    boolean edgecase(HashMap<String, Blob> currTracked, Branch given) {
+     * CURRTRACKED, GIVEN and SPLITPOINT. */
+    boolean edgecase(HashMap<String, Blob> currTracked, Branch given,
+                     Commit splitPoint) {
         Commit givenHead = given.head();
         for (String name : currTracked.keySet()) {
             if (givenHead.getParent().getBlobs() != null) {
@@ -648,9 +1206,12 @@ public class Command implements Serializable {
                 if (cond1 && cond2 && cond3 && cond4) {
                     Blob blob = givenHead.getParent().findBlob(name);
                     if (!currTracked.get(name).sameContent(blob)) {
-                        mergeConflict(currTracked.get(name),
-                                blob, new File(_dir, name));
-                        return true;
+                        if (mergeConflict(splitPoint.trackedBlob(name),
+                                currTracked.get(name), blob,
+                                new File(_dir, name))) {
+                            return true;
+                        }
+                        add(name);
                     }
                 }
             }
@@ -664,7 +1225,7 @@ public class Command implements Serializable {
             for (String fileName : given.removed().keySet()) {
                 File file = new File(_dir, fileName);
                 if (file.exists()) {
-                    Utils.restrictedDelete(fileName);
+                    Utils.restrictedDelete(file);
                 }
             }
         }
@@ -688,9 +1249,12 @@ public class Command implements Serializable {
                     if (currTracked.containsKey(removed) && modCurr) {
                         Blob currBlob = currHead.findBlob(removed);
                         Blob givenBlob = givenHead.findBlob(removed);
-                        mergeConflict(currBlob, givenBlob,
-                                new File(_dir, removed));
-                        return true;
+                        if (mergeConflict(splitPoint.trackedBlob(removed),
+                                currBlob, givenBlob,
+                                new File(_dir, removed))) {
+                            return true;
+                        }
+                        add(removed);
                     }
                 }
             }
@@ -710,16 +1274,28 @@ public class Command implements Serializable {
         }
     }
 
-    /** Writes the message in the FILE with
-     * CURRBLOB and GIVENBLOB. */
-    void mergeConflict(Blob currBlob, Blob givenBlob, File file) {
+    /** Writes the merge of CURRBLOB and GIVENBLOB against their common
+     * ancestor BASEBLOB in the FILE and returns true if it has conflicts.
+     * Their lines are merged with a LineMerge, unless a side has no blob,
+     * in which case the whole file is a conflict. */
+    boolean mergeConflict(Blob baseBlob, Blob currBlob, Blob givenBlob,
+                          File file) {
+        String baseCont = "";
         String currCont = "";
         String givenCont = "";
+        if (baseBlob != null) {
+            baseCont = _store.readBlobAsString(baseBlob.hash());
+        }
         if (currBlob != null) {
-            currCont = currBlob.content();
+            currCont = _store.readBlobAsString(currBlob.hash());
         }
         if (givenBlob != null) {
-            givenCont = givenBlob.content();
+            givenCont = _store.readBlobAsString(givenBlob.hash());
+        }
+        if (currBlob != null && givenBlob != null) {
+            LineMerge merged = new LineMerge(baseCont, currCont, givenCont);
+            Utils.writeContents(file, merged.result());
+            return merged.conflicted();
         }
         String msg = "<<<<<<< HEAD\n"
                 + currCont
@@ -727,6 +1303,7 @@ public class Command implements Serializable {
                 + givenCont
                 + ">>>>>>>\n";
         Utils.writeContents(file, msg);
+        return true;
     }
 
     /** Returns true if the FILENAME is modified
@@ -748,25 +1325,61 @@ public class Command implements Serializable {
     /** Returns the split point branch
      * in the two branches of CURR and MERGE. */
     Commit splitPoint(Branch curr, Branch merge) {
-        ArrayList<String> currAllHash = curr.getAllHashs();
-        Commit pointer = merge.head();
-        while (pointer != null) {
-            String pointHash = pointer.getHash();
-            if (currAllHash.contains(pointHash)) {
-                return pointer;
+        String base = graph().mergeBase(curr.headHash(), merge.headHash());
+        if (base == null) {
+            return null;
+        }
+        return _store.readCommit(base);
+    }
+
+    /** Packs all objects of the repository, storing the versions of each
+     *  file as deltas against each other. */
+    void gc() {
+        HashMap<String, ArrayList<String>> histories =
+            new HashMap<String, ArrayList<String>>();
+        HashSet<String> seenCommits = new HashSet<String>();
+        HashSet<String> seenBlobs = new HashSet<String>();
+        for (String name : branchNames()) {
+            Commit pointer = findBranch(name).head();
+            while (pointer != null && seenCommits.add(pointer.getHash())) {
+                if (pointer.getBlobs() != null) {
+                    for (Map.Entry<String, Blob> entry
+                             : pointer.getBlobs().entrySet()) {
+                        String hash = entry.getValue().hash();
+                        if (seenBlobs.add(hash)) {
+                            histories.computeIfAbsent(entry.getKey(),
+                                k -> new ArrayList<String>()).add(hash);
+                        }
+                    }
+                }
+                pointer = pointer.getParent();
             }
-            pointer = pointer.getParent();
+            graph().generation(findBranch(name).headHash());
+        }
+        _store.repack(new ArrayList<ArrayList<String>>(histories.values()));
+    }
+
+    /** Serves this repository to remotes at the address in ARGS, either
+     * gitlet://HOST:PORT on a loopback interface or unix:PATH.
+     * Usage: java gitlet.Main serve [address]. */
+    void serve(String... args) {
+        if (args.length != 2 || !Protocol.isAddress(args[1])) {
+            throw Utils.error("Incorrect operands.");
+        }
+        try {
+            new RemoteServer(_store, _refs, graph()).serve(args[1]);
+        } catch (IllegalArgumentException excp) {
+            throw new GitletException(excp.getMessage());
         }
-        return null;
     }
 
-    /** Add the login info in ARGS to the remote list. */
+    /** Add the login info in ARGS to the remote list, which is the path
+     * of a .gitlet directory or the address of a served repository. */
     void addRemote(String... args) {
         String remoteName = args[1];
         String loginInfo = args[2];
         if (_remote.containsKey(remoteName)) {
-            System.out.println("A remote with that name already exists.");
-            System.exit(0);
+            throw Utils.error("A remote with that name already exists.");
         }
         _remote.put(remoteName, loginInfo);
     }
@@ -774,8 +1387,7 @@ public class Command implements Serializable {
     /** Removes remote repo with REMOTENAME. */
     void rmRemote(String remoteName) {
         if (!_remote.containsKey(remoteName)) {
-            System.out.println("A remote with that name does not exist.");
-            System.exit(0);
+            throw Utils.error("A remote with that name does not exist.");
         }
         _remote.remove(remoteName);
     }
@@ -783,38 +1395,28 @@ public class Command implements Serializable {
     /** Push the BRANCHNAME in REMOTENAME to
      * current gitlet. */
     void push(String remoteName, String branchName) {
-        String loginInfo = _remote.get(remoteName);
-        Command command = null;
-        File remoteWD = new File(_dir, loginInfo);
-        File data = new File(remoteWD, "data");
-        if (remoteWD.exists()) {
-            command = Utils.readObject(data, Command.class);
-        } else {
-            System.out.println("Remote directory not found.");
-            System.exit(0);
-        }
-        Commit currHead = _currBranch.head();
-        Commit copy = new Commit(currHead);
-        Branch remoteBranch = command.findBranch(branchName);
-        if (remoteBranch == null) {
-            Branch branch = new Branch(branchName, copy);
-            command.addBranch(branch);
-            System.exit(0);
-        }
-        Commit remoteHead = remoteBranch.head();
-        if (!currHead.hasHistory(remoteHead)) {
-            System.out.println("Please pull down"
-                    + " remote changes before pushing.");
-            System.exit(0);
+        try (Transport remote = transport(remoteName)) {
+            Map<String, String> refs = remote.refs();
+            Commit currHead = _currBranch.head();
+            String remoteHead = refs.get(branchName);
+            if (remoteHead != null
+                && !graph().isAncestor(remoteHead, currHead.getHash())) {
+                throw Utils.error("Please pull down"
+                        + " remote changes before pushing.");
+            }
+            copyHistory(graph().missing(currHead.getHash(), refs.values()),
+                        new LocalTransport(_store, _refs, graph()), remote);
+            try {
+                remote.update(branchName, remoteHead, currHead.getHash());
+            } catch (IllegalArgumentException excp) {
+                throw Utils.error(excp.getMessage());
+            }
         }
-        remoteBranch.setHead(copy);
-        File save = new File(remoteWD, "data");
-        Utils.writeObject(save, command);
     }
 
     /** Add BRANCH to the branch list. */
     public void addBranch(Branch branch) {
-        _branches.add(branch);
+        _loaded.put(branch.name(), branch);
     }
 
     /** Pulls the BRANCHNAME in REMOTENAME. */
@@ -822,67 +1424,176 @@ public class Command implements Serializable {
         commit("Merged R1/master into master.");
     }
 
-    /** Fetches the BRANCHNAME in REMOTENAME. */
+    /** Fetches the BRANCHNAME in REMOTENAME.  The remote is sent the heads
+     *  of all branches here and answers with the commits they lack, which
+     *  are then read a batch at a time. */
     void fetch(String remoteName, String branchName) {
-        String loginInfo = _remote.get(remoteName);
-        File remoteWD = new File(_dir, loginInfo);
-        File data = new File(remoteWD, "data");
-        Command command = null;
-        _fetched = true;
-        if (remoteWD.exists()) {
-            command = Utils.readObject(data, Command.class);
-        } else {
-            System.out.println("Remote directory not found.");
-            System.exit(0);
-        }
-        if (command.findBranch(branchName) == null) {
-            System.out.println("That remote does not have that branch.");
-            System.exit(0);
-        }
-        Commit currHead = _currBranch.head();
-        Commit remoteHead = command.findBranch(branchName).head();
-        Commit allCopy = new Commit(remoteHead);
-        Commit copy = new Commit(remoteHead);
-        Commit pointer = copy;
-        if (!pointer.getHash().equals(currHead.getHash())) {
-            while (pointer.getParent() != null) {
-                if (pointer.getParent().getHash().equals(currHead.getHash())) {
-                    break;
+        String remoteHead;
+        try (Transport remote = transport(remoteName)) {
+            _fetched = true;
+            remoteHead = remote.refs().get(branchName);
+            if (remoteHead == null) {
+                throw Utils.error("That remote does not have that branch.");
+            }
+            ArrayList<String> haves = new ArrayList<String>();
+            for (String name : branchNames()) {
+                haves.add(findBranch(name).headHash());
+            }
+            List<String> missing = remote.missing(remoteHead, haves);
+            Transport local = new LocalTransport(_store, _refs, graph());
+            for (int i = 0; i < missing.size(); i += Protocol.BATCH_COUNT) {
+                List<String> batch = missing.subList(i,
+                    Math.min(missing.size(), i + Protocol.BATCH_COUNT));
+                List<byte[]> commits = remote.read(batch);
+                for (int k = 0; k < batch.size(); k += 1) {
+                    if (!_store.contains(batch.get(k))) {
+                        copyCommit(batch.get(k), commits.get(k), remote,
+                                   local);
+                        _newCommits.add(batch.get(k));
+                    }
                 }
-                pointer = pointer.getParent();
             }
         }
-        pointer.setParent(_currBranch.head());
+        Commit head = _store.readCommit(remoteHead);
         String newbranchName = branchName + "@" + remoteName;
-        Branch newBranch = findBranch((newbranchName));
+        Branch newBranch = findBranch(newbranchName);
         if (newBranch != null) {
-            newBranch.setHead(copy);
+            newBranch.setHead(head);
         } else {
-            Branch branch = new Branch(newbranchName, allCopy);
-            _branches.add(branch);
+            addBranch(new Branch(newbranchName, head));
+        }
+    }
+
+    /** Returns the transport to the remote with REMOTENAME, which is
+     *  either a repository directory or the address of a served one. */
+    Transport transport(String remoteName) {
+        String loginInfo = _remote.get(remoteName);
+        if (loginInfo != null && Protocol.isAddress(loginInfo)) {
+            try {
+                return new SocketTransport(loginInfo);
+            } catch (IOException | IllegalArgumentException excp) {
+                throw Utils.error("Remote directory not found.");
+            }
+        }
+        File remoteRepo = remoteRepo(remoteName);
+        ObjectStore remoteStore = new ObjectStore(remoteRepo);
+        return new LocalTransport(remoteStore,
+            new Refs(remoteRepo, remoteStore),
+            CommitGraph.load(new File(remoteRepo, "commit-graph"),
+                             remoteStore));
+    }
+
+    /** Returns the .gitlet directory of the remote with REMOTENAME. */
+    File remoteRepo(String remoteName) {
+        String loginInfo = _remote.get(remoteName);
+        File remoteRepo = null;
+        if (loginInfo != null) {
+            remoteRepo = new File(_dir, loginInfo);
+        }
+        if (remoteRepo == null || !remoteRepo.exists()) {
+            throw Utils.error("Remote directory not found.");
+        }
+        return remoteRepo;
+    }
+
+    /** Copies the commits with HASHES that TO lacks, oldest first, with
+     *  their manifests and blobs, from FROM to TO. */
+    void copyHistory(List<String> hashes, Transport from, Transport to) {
+        for (String hash : to.lacking(hashes)) {
+            copyCommit(hash, from.read(hash), from, to);
+        }
+    }
+
+    /** Copies the commit with HASH, whose stored form is CONTENTS,
+     *  from FROM to TO after its blobs and manifest, which are copied
+     *  where TO lacks them. */
+    void copyCommit(String hash, byte[] contents, Transport from,
+                    Transport to) {
+        Commit commit = Commit.decode(contents);
+        if (commit.getBlobs() != null) {
+            HashMap<String, String> blobs = new HashMap<String, String>();
+            for (Map.Entry<String, Blob> entry
+                     : commit.getBlobs().entrySet()) {
+                if (entry.getValue() != null) {
+                    blobs.put(entry.getValue().hash(), entry.getKey());
+                }
+            }
+            Transport.copy(from, to, blobs);
+        }
+        if (commit.getTree() != null) {
+            Tree.copy(from, to, commit.getTree());
         }
-        File save = new File(remoteWD, "data");
-        Utils.writeObject(save, command);
+        to.write(hash, "", contents);
     }
 
+    /** Journal operation staging a file for addition. */
+    private static final byte ADD = 1;
+    /** Journal operation unstaging a file for addition. */
+    private static final byte UNADD = 2;
+    /** Journal operation staging a file for removal. */
+    private static final byte REMOVE = 3;
+    /** Journal operation unstaging a file for removal. */
+    private static final byte UNREMOVE = 4;
+    /** Journal operation adding or changing a remote. */
+    private static final byte REMOTE = 5;
+    /** Journal operation removing a remote. */
+    private static final byte UNREMOTE = 6;
+    /** Journal operation switching the current branch. */
+    private static final byte BRANCH = 7;
+    /** Journal operation setting whether a remote was fetched. */
+    private static final byte FETCHED = 8;
+
     /** Working Directory. */
-    private File _dir = new File(System.getProperty("user.dir"));
+    private transient File _dir;
     /** Gitlet repository. */
-    private File _repo = new File(_dir, ".gitlet");
+    private transient File _repo;
+    /** All commits and blobs of the repository. */
+    private transient ObjectStore _store;
+    /** All branches of the repository. */
+    private transient Refs _refs;
+    /** Branches loaded by this command, by name. */
+    private transient HashMap<String, Branch> _loaded;
+    /** Hashes of the commits made by this command. */
+    private transient ArrayList<String> _newCommits;
+    /** Stat cache of the working files, loaded on demand. */
+    private transient StatCache _statCache;
+    /** Commit graph, loaded on demand. */
+    private transient CommitGraph _graph;
+    /** Index of commit ids, loaded on demand. */
+    private transient CommitIndex _commitIndex;
+    /** Index of commit messages, loaded on demand. */
+    private transient MessageIndex _messageIndex;
+    /** Number of the commits in _newCommits that are in _messageIndex. */
+    private transient int _indexedCommits;
     /** Stage of the repo. */
     private Stage _stage;
+    /** Name of the current working branch. */
+    private String _currName;
     /** Current working branch. */
-    private Branch _currBranch;
+    private transient Branch _currBranch;
     /** Whether or not the program is fetched. */
     private boolean _fetched = false;
-    /** All working branched. */
-    private ArrayList<Branch> _branches;
-    /** All commits made so far. */
-    private ArrayList<Commit> _commits;
     /** Modified files not committed. */
     private ArrayList<String> _modified;
     /** All untracked files. */
     private ArrayList<String> _untracked;
     /** All remotes in the filesystem. */
     private HashMap<String, String> _remote;
+    /** Journal of the changes to the state of the repository. */
+    private transient Journal _journal;
+    /** Names and hashes of the files staged for addition when the state
+     *  was last marked. */
+    private transient HashMap<String, String> _savedAddition;
+    /** Names and hashes of the files staged for removal when the state
+     *  was last marked. */
+    private transient HashMap<String, String> _savedRemoval;
+    /** Name of the current branch when the state was last marked. */
+    private transient String _savedName;
+    /** Whether a remote was fetched when the state was last marked. */
+    private transient boolean _savedFetched;
+    /** Remotes when the state was last marked. */
+    private transient HashMap<String, String> _savedRemote;
+    /** Version of the Java serialized form of the state, fixed so
+     *  that state saved before Codec can still be read. */
+    private static final long serialVersionUID = -3598492134170243044L;
 }
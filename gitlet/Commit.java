@@ -4,7 +4,7 @@ import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.function.LongSupplier;
 
 /** Class structured as linked list that stores metadata of each commit.
  *  @author Amy Kwon
@@ -16,7 +16,7 @@ public class Commit implements Serializable {
      * Getting current timestamp (https://tinyurl.com/yasy9ytf). */
     public Commit(String message, Commit parent, HashMap<String, Blob> blobs) {
         _message = message;
-        _parent = parent;
+        setParent(parent);
         _blobs = blobs;
         _timestamp = "Thu Jan 01 00:00:00 1970 -0800";
         setHash(_message + _timestamp);
@@ -33,14 +33,52 @@ public class Commit implements Serializable {
      * Referenced LOA's copyFrom method. */
     void copyFrom(Commit parent) {
         _message = parent.getMessage();
-        _parent = parent.getParent();
+        _parentHash = parent.getParentHash();
+        _store = parent._store;
+        _tree = parent.getTree();
         _blobs = parent.getBlobs();
         SimpleDateFormat time =
                 new SimpleDateFormat("E MMM dd HH:mm:ss yyyy Z");
-        _timestamp = time.format(new Date());
+        _timestamp = time.format(new Date(_clock.getAsLong()));
         _hash = parent.getHash();
     }
 
+    /** A commit read from the record IN. */
+    private Commit(Codec.Reader in) {
+        _message = in.readString();
+        _timestamp = in.readString();
+        _parentHash = in.readHash();
+        _blobs = in.readBlobs();
+        _tree = in.readHash();
+        _hash = in.readHash();
+    }
+
+    /** Returns the commit whose stored form is CONTENTS. */
+    static Commit decode(byte[] contents) {
+        if (Codec.isLegacy(contents)) {
+            return Utils.deserialize(contents, Commit.class);
+        }
+        return new Commit(new Codec.Reader(contents, Codec.COMMIT));
+    }
+
+    /** Returns the stored form of the commit. */
+    byte[] encode() {
+        Codec.Writer out = new Codec.Writer(Codec.COMMIT);
+        out.writeString(_message);
+        out.writeString(_timestamp);
+        out.writeHash(_parentHash);
+        out.writeBlobs(_blobs);
+        out.writeHash(_tree);
+        out.writeHash(_hash);
+        return out.toByteArray();
+    }
+
+    /** Use STORE to load the parent commit on demand. */
+    void attach(ObjectStore store) {
+        _store = store;
+        _parent = null;
+    }
+
     /** Returns the timestamp of the commit. */
     public String getTimestamp() {
         return _timestamp;
@@ -51,16 +89,51 @@ public class Commit implements Serializable {
         return _message;
     }
 
-    /** Returns the parents of the commit. */
+    /** Returns the parents of the commit.  A commit read from the
+     * ObjectStore loads its parent through the store's commit cache
+     * instead of holding on to it, so a commit never pins its history. */
     public Commit getParent() {
+        if (_parent == null && _parentHash != null && _store != null) {
+            return _store.readCommit(_parentHash);
+        }
         return _parent;
     }
 
-    /** Returns the blob of the commit. */
+    /** Returns the hash of the parent of the commit. */
+    public String getParentHash() {
+        return _parentHash;
+    }
+
+    /** Returns the blobs staged for the commit. */
     public HashMap<String, Blob> getBlobs() {
         return _blobs;
     }
 
+    /** Returns the hash of the root of the manifest of the commit, which
+     * holds every file of its snapshot, or null if it has none. */
+    public String getTree() {
+        return _tree;
+    }
+
+    /** Returns all files of the snapshot of the commit mapped to their
+     * blob hashes, reading the whole manifest. */
+    public HashMap<String, String> getManifest() {
+        if (_tree == null) {
+            return new HashMap<String, String>();
+        }
+        return Tree.read(_store, _tree);
+    }
+
+    /** Returns the Blob of FILENAME in the snapshot of the commit, or null
+     * if it has none, reading one manifest node per level. */
+    public Blob trackedBlob(String fileName) {
+        if (_tree == null) {
+            return null;
+        }
+        String hash = Tree.find(_store, _tree, fileName);
+        return hash == null ? null : new Blob(hash);
+    }
+
     /** Returns the hash of the commit. */
     public String getHash() {
         return _hash;
@@ -81,9 +154,15 @@ public class Commit implements Serializable {
         _blobs = blobs;
     }
 
+    /** Set the manifest of the commit to the tree with root hash TREE. */
+    public void setTree(String tree) {
+        _tree = tree;
+    }
+
     /** Set the commit parent with the given PARENT. */
     public void setParent(Commit parent) {
-        _parent = parent;
+        _parent = _store == null ? parent : null;
+        _parentHash = parent == null ? null : parent.getHash();
     }
 
     /** Set the commit hash with the given INPUT. */
@@ -91,44 +170,38 @@ public class Commit implements Serializable {
         _hash = Utils.sha1(input);
     }
 
-    /** Return the Blob of the FILENAME in the commit.
-     * Referenced (https://tinyurl.com/yasy9ytf). */
+    /** Makes CLOCK the source of the times, in milliseconds since the
+     *  epoch, of the commits made from now on. */
+    static void setClock(LongSupplier clock) {
+        _clock = clock;
+    }
+
+    /** Return the Blob of the FILENAME staged for the commit. */
     public Blob findBlob(String fileName) {
         if (_blobs == null) {
             return null;
         }
-        for (Map.Entry<String, Blob> entry : _blobs.entrySet()) {
-            String file = entry.getKey();
-            Blob blob = entry.getValue();
-            if (file.equals(fileName)) {
-                return blob;
-            }
-        }
-        return null;
-    }
-
-    /** Returns true is the REMOTEHEAD existed
-     * in the past commits of this commit. */
-    public boolean hasHistory(Commit remoteHead) {
-        Commit pointer = this;
-        while (pointer != null) {
-            if (pointer.getHash().equals(remoteHead.getHash())) {
-                return true;
-            }
-            pointer = pointer.getParent();
-        }
-        return false;
+        return _blobs.get(fileName);
     }
 
     /** Commit message. */
     private String _message;
     /** Commit timestamp. */
     private String _timestamp;
-    /** Commit parent. */
-    private Commit _parent;
+    /** Hash of the commit parent. */
+    private String _parentHash;
+    /** Commit parent of a commit that is not in a store. */
+    private transient Commit _parent;
+    /** Store the parent commit is loaded from. */
+    private transient ObjectStore _store;
     /** Commit blobs. */
     private HashMap<String, Blob> _blobs;
+    /** Hash of the root of the manifest of the commit. */
+    private String _tree;
     /** Commit hash. */
     private String _hash;
-
+    /** Source of the times of new commits. */
+    private static LongSupplier _clock = System::currentTimeMillis;
+    /** Version of the serialized form of commits stored before Codec. */
+    private static final long serialVersionUID = -8624214963827250649L;
 }
@@ -0,0 +1,256 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/** The parents and generation number of every commit, kept in
+ *  .gitlet/commit-graph.  The generation of a root commit is 1 and that
+ *  of any other commit is one more than the largest generation of its
+ *  parents, so a commit can only be an ancestor of commits with a larger
+ *  generation.  Commits missing from the file are read from the
+ *  ObjectStore and added the first time they are needed.
+ *  @author Amy Kwon
+ */
+public class CommitGraph {
+
+    /** Returns the commit graph stored in FILE, or an empty one if FILE
+     *  does not exist or cannot be read, reading missing commits from
+     *  STORE. */
+    static CommitGraph load(File file, ObjectStore store) {
+        CommitGraph graph = null;
+        if (file.exists()) {
+            try {
+                graph = new CommitGraph(new Codec.Reader(
+                    Utils.readContents(file), Codec.COMMIT_GRAPH));
+            } catch (IllegalArgumentException excp) {
+                graph = null;
+            }
+        }
+        if (graph == null) {
+            graph = new CommitGraph();
+        }
+        graph._store = store;
+        return graph;
+    }
+
+    /** An empty commit graph. */
+    CommitGraph() {
+        _nodes = new HashMap<String, Node>();
+    }
+
+    /** A commit graph read from the record IN. */
+    private CommitGraph(Codec.Reader in) {
+        this();
+        for (int n = in.readInt(); n > 0; n -= 1) {
+            String hash = in.readHash();
+            String[] parents = new String[in.readInt()];
+            for (int i = 0; i < parents.length; i += 1) {
+                parents[i] = in.readHash();
+            }
+            _nodes.put(hash, new Node(parents, in.readInt()));
+        }
+    }
+
+    /** Writes this graph to FILE if it changed. */
+    void save(File file) {
+        if (_dirty) {
+            Codec.Writer out = new Codec.Writer(Codec.COMMIT_GRAPH);
+            out.writeVarint(_nodes.size());
+            for (Map.Entry<String, Node> entry : _nodes.entrySet()) {
+                out.writeHash(entry.getKey());
+                out.writeVarint(entry.getValue()._parents.length);
+                for (String parent : entry.getValue()._parents) {
+                    out.writeHash(parent);
+                }
+                out.writeVarint(entry.getValue()._generation);
+            }
+            Utils.writeContents(file, out.toByteArray());
+            _dirty = false;
+        }
+    }
+
+    /** Returns the generation of the commit with HASH. */
+    public int generation(String hash) {
+        return node(hash)._generation;
+    }
+
+    /** Returns the hashes of the parents of the commit with HASH. */
+    public String[] parents(String hash) {
+        return node(hash)._parents;
+    }
+
+    /** Returns the hash of the best common ancestor of the commits with
+     *  hashes FIRST and SECOND, or null if they have none.  Commits are
+     *  visited from the largest generation down, so the walk stops at
+     *  the first commit reached from both sides. */
+    public String mergeBase(String first, String second) {
+        HashMap<String, Integer> flags = new HashMap<String, Integer>();
+        HashSet<String> done = new HashSet<String>();
+        PriorityQueue<String> queue = new PriorityQueue<String>(
+            (a, b) -> Integer.compare(generation(b), generation(a)));
+        flags.put(first, FIRST);
+        queue.add(first);
+        flags.merge(second, SECOND, (a, b) -> a | b);
+        queue.add(second);
+        while (!queue.isEmpty()) {
+            String hash = queue.poll();
+            if (!done.add(hash)) {
+                continue;
+            }
+            int flag = flags.get(hash);
+            if (flag == BOTH) {
+                return hash;
+            }
+            for (String parent : parents(hash)) {
+                Integer old = flags.get(parent);
+                int updated = old == null ? flag : old | flag;
+                if (old == null || updated != old) {
+                    flags.put(parent, updated);
+                    queue.add(parent);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns the hashes of the commits that are HEAD or its ancestors
+     *  but neither any of the commits with hashes in HAVES nor their
+     *  ancestors, oldest first.  Hashes of HAVES that are not in the store
+     *  are ignored.  Commits are visited from the largest generation
+     *  down, and the walk stops as soon as every commit left to visit is
+     *  an ancestor of HAVES. */
+    public List<String> missing(String head, Collection<String> haves) {
+        HashMap<String, Integer> flags = new HashMap<String, Integer>();
+        HashSet<String> open = new HashSet<String>();
+        PriorityQueue<String> queue = new PriorityQueue<String>(
+            (a, b) -> Integer.compare(generation(b), generation(a)));
+        flags.put(head, FIRST);
+        open.add(head);
+        queue.add(head);
+        for (String have : haves) {
+            if (_store.contains(have)) {
+                flags.merge(have, SECOND, (a, b) -> a | b);
+                open.remove(have);
+                queue.add(have);
+            }
+        }
+        ArrayList<String> result = new ArrayList<String>();
+        HashSet<String> done = new HashSet<String>();
+        while (!open.isEmpty()) {
+            String hash = queue.poll();
+            if (!done.add(hash)) {
+                continue;
+            }
+            open.remove(hash);
+            int flag = flags.get(hash);
+            if (flag == FIRST) {
+                result.add(hash);
+            }
+            for (String parent : parents(hash)) {
+                Integer old = flags.get(parent);
+                int updated = old == null ? flag : old | flag;
+                if (old == null || updated != old) {
+                    flags.put(parent, updated);
+                    queue.add(parent);
+                    if (updated == FIRST) {
+                        open.add(parent);
+                    } else {
+                        open.remove(parent);
+                    }
+                }
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /** Returns true if the commit with hash ANCESTOR is the commit with
+     *  hash HASH or one of its ancestors.  Commits whose generation is
+     *  not larger than that of ANCESTOR are not walked past. */
+    public boolean isAncestor(String ancestor, String hash) {
+        if (!_store.contains(ancestor)) {
+            return false;
+        }
+        int target = generation(ancestor);
+        ArrayList<String> stack = new ArrayList<String>();
+        HashSet<String> seen = new HashSet<String>();
+        stack.add(hash);
+        while (!stack.isEmpty()) {
+            String pointer = stack.remove(stack.size() - 1);
+            if (pointer.equals(ancestor)) {
+                return true;
+            }
+            if (seen.add(pointer) && generation(pointer) > target) {
+                for (String parent : parents(pointer)) {
+                    stack.add(parent);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns the node of the commit with HASH, adding it and any of its
+     *  ancestors missing from the graph. */
+    private Node node(String hash) {
+        Node node = _nodes.get(hash);
+        if (node != null) {
+            return node;
+        }
+        ArrayList<Commit> missing = new ArrayList<Commit>();
+        Commit pointer = _store.readCommit(hash);
+        while (pointer != null && !_nodes.containsKey(pointer.getHash())) {
+            missing.add(pointer);
+            pointer = pointer.getParent();
+        }
+        for (int i = missing.size() - 1; i >= 0; i -= 1) {
+            Commit commit = missing.get(i);
+            String parent = commit.getParentHash();
+            String[] parents =
+                parent == null ? new String[0] : new String[] {parent};
+            int generation = 1;
+            for (String each : parents) {
+                generation = Math.max(generation,
+                                      _nodes.get(each)._generation + 1);
+            }
+            _nodes.put(commit.getHash(), new Node(parents, generation));
+        }
+        _dirty = true;
+        return _nodes.get(hash);
+    }
+
+    /** Parents and generation of one commit. */
+    private static class Node {
+
+        /** A node with PARENTS and GENERATION. */
+        Node(String[] parents, int generation) {
+            _parents = parents;
+            _generation = generation;
+        }
+
+        /** Hashes of the parents of the commit. */
+        private String[] _parents;
+        /** Generation of the commit. */
+        private int _generation;
+    }
+
+    /** Flag of commits reached from the first commit of a merge base. */
+    private static final int FIRST = 1;
+    /** Flag of commits reached from the second commit of a merge base. */
+    private static final int SECOND = 2;
+    /** Flags of commits reached from both commits of a merge base. */
+    private static final int BOTH = FIRST | SECOND;
+
+    /** Nodes of the commits by hash. */
+    private HashMap<String, Node> _nodes;
+    /** Store missing commits are read from. */
+    private ObjectStore _store;
+    /** Whether the graph changed since it was loaded. */
+    private boolean _dirty;
+}
@@ -0,0 +1,152 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Index of all commit ids, kept next to the objects, that resolves full
+ *  and abbreviated ids.  The ids live in a file of fixed-width lines
+ *  sorted by id, which is binary searched on disk, plus a short unsorted
+ *  file of recent ids that is merged into it once it grows past LIMIT.
+ *  @author Amy Kwon
+ */
+public class CommitIndex {
+
+    /** The commit index kept in the objects directory OBJECTS. */
+    public CommitIndex(File objects) {
+        _sorted = new File(objects, "commit-index");
+        _pending = new File(objects, "commit-index-pending");
+    }
+
+    /** Returns true if the index has been written. */
+    public boolean exists() {
+        return _sorted.exists();
+    }
+
+    /** Replaces the index with one holding the commit ids HASHES. */
+    public void rebuild(List<String> hashes) {
+        ArrayList<String> sorted = new ArrayList<String>(hashes);
+        Collections.sort(sorted);
+        StringBuilder contents = new StringBuilder();
+        String last = null;
+        for (String hash : sorted) {
+            if (!hash.equals(last)) {
+                contents.append(hash).append('\n');
+            }
+            last = hash;
+        }
+        _sorted.getParentFile().mkdirs();
+        Utils.writeContents(_sorted, contents.toString());
+        _pending.delete();
+    }
+
+    /** Adds the commit ids HASHES to the index. */
+    public void add(List<String> hashes) {
+        if (hashes.isEmpty()) {
+            return;
+        }
+        StringBuilder contents = new StringBuilder();
+        for (String hash : hashes) {
+            contents.append(hash).append('\n');
+        }
+        try {
+            Files.write(_pending.toPath(),
+                    contents.toString().getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        List<String> pending = pending();
+        if (pending.size() > LIMIT) {
+            ArrayList<String> all = new ArrayList<String>(sorted());
+            all.addAll(pending);
+            rebuild(all);
+        }
+    }
+
+    /** Returns the ids in the index that start with PREFIX, at most two
+     *  of them, which is enough to tell a unique id from an ambiguous
+     *  one. */
+    public List<String> resolve(String prefix) {
+        ArrayList<String> result = new ArrayList<String>();
+        if (prefix.isEmpty()) {
+            return result;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(_sorted, "r")) {
+            long count = file.length() / RECORD;
+            long low = 0, high = count;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (record(file, mid).compareTo(prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (long i = low; i < count && result.size() < 2; i += 1) {
+                String hash = record(file, i);
+                if (!hash.startsWith(prefix)) {
+                    break;
+                }
+                result.add(hash);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        for (String hash : pending()) {
+            if (result.size() < 2 && hash.startsWith(prefix)
+                && !result.contains(hash)) {
+                result.add(hash);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the id in record I of FILE. */
+    private static String record(RandomAccessFile file, long i)
+        throws IOException {
+        byte[] hash = new byte[Utils.UID_LENGTH];
+        file.seek(i * RECORD);
+        file.readFully(hash);
+        return new String(hash, StandardCharsets.US_ASCII);
+    }
+
+    /** Returns the ids of the sorted file. */
+    private List<String> sorted() {
+        return lines(_sorted);
+    }
+
+    /** Returns the ids not yet merged into the sorted file. */
+    private List<String> pending() {
+        return lines(_pending);
+    }
+
+    /** Returns the non-empty lines of FILE, if it exists. */
+    private static List<String> lines(File file) {
+        ArrayList<String> result = new ArrayList<String>();
+        if (file.exists()) {
+            for (String line : Utils.readContentsAsString(file).split("\n")) {
+                if (!line.isEmpty()) {
+                    result.add(line);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Length of a line of the sorted file. */
+    private static final int RECORD = Utils.UID_LENGTH + 1;
+    /** Largest number of ids kept out of the sorted file. */
+    private static final int LIMIT = 256;
+
+    /** File of all merged ids, sorted. */
+    private File _sorted;
+    /** File of the recent ids, unsorted. */
+    private File _pending;
+}
@@ -0,0 +1,304 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Resident runner of the commands of one repository, started by the
+ *  daemon command.  It listens on .gitlet/daemon.sock and keeps the
+ *  state of the repository loaded between commands, with its caches of
+ *  objects, the commit graph and the stat cache warm, so that a command
+ *  forwarded to it by Main costs neither loading the state nor warming
+ *  up a new JVM.  Each command is run and saved in turn, its output
+ *  streamed back to the client as it is written.  The state is loaded
+ *  again whenever the files it is kept in were changed by anything but
+ *  the daemon, and after any command that failed.
+ *
+ *  The client sends one frame of type RUN holding the arguments and gets
+ *  back OUTPUT frames holding standard output, then a DONE frame holding
+ *  the exit status and a message for standard error, which is empty
+ *  unless the command failed unexpectedly.
+ *  @author Amy Kwon
+ */
+class Daemon {
+
+    /** A daemon that starts with COMMAND, the state of the repository in
+     *  the working directory. */
+    Daemon(Command command) {
+        _command = command;
+        _stamp = stamp();
+    }
+
+    /** Runs the commands sent to the socket of the repository until the
+     *  process is stopped. */
+    void serve() {
+        File socket = socket();
+        if (socket.exists()) {
+            try (SocketChannel running =
+                     SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                running.connect(UnixDomainSocketAddress.of(socket.toPath()));
+                throw Utils.error("A daemon is already running.");
+            } catch (IOException excp) {
+                socket.delete();
+            }
+        }
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            socket.deleteOnExit();
+            server.bind(UnixDomainSocketAddress.of(socket.toPath()));
+            while (true) {
+                try (SocketChannel client = server.accept()) {
+                    handle(client);
+                } catch (IOException excp) {
+                    continue;
+                }
+            }
+        } catch (IOException excp) {
+            throw new GitletException(excp.getMessage());
+        }
+    }
+
+    /** Runs the command sent over CLIENT, sending back its output. */
+    private void handle(SocketChannel client) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            Channels.newInputStream(client)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            Channels.newOutputStream(client), BUFFER_SIZE));
+        byte[] frame = Protocol.readFrame(in);
+        if (frame[0] != RUN) {
+            return;
+        }
+        DataInputStream body = new DataInputStream(
+            new ByteArrayInputStream(frame, 1, frame.length - 1));
+        String[] args = new String[body.readInt()];
+        for (int i = 0; i < args.length; i += 1) {
+            args[i] = body.readUTF();
+        }
+        Output output = new Output(out);
+        OutputStream stdout = Main.stdout();
+        Main.setStdout(output);
+        int status = 0;
+        String failure = "";
+        try {
+            run(args);
+        } catch (GitletException excp) {
+            _command = null;
+            if (excp.getMessage() != null) {
+                System.out.println(excp.getMessage());
+            }
+        } catch (IOException | RuntimeException excp) {
+            _command = null;
+            status = 1;
+            failure = String.valueOf(excp);
+        } finally {
+            System.out.flush();
+            Main.setStdout(stdout);
+        }
+        ByteArrayOutputStream done = Protocol.body();
+        DataOutputStream result = new DataOutputStream(done);
+        result.writeInt(status);
+        result.writeUTF(failure);
+        Protocol.writeFrame(out, DONE, done.toByteArray());
+        out.flush();
+    }
+
+    /** Runs the command ARGS on the state of the repository, loading it
+     *  again first if it changed since the daemon last saved it. */
+    private void run(String[] args) throws IOException {
+        if (args.length > 0 && !forwarded(args[0])) {
+            throw Utils.error("That command cannot be run by the daemon.");
+        }
+        String stamp = stamp();
+        if (_command == null || !stamp.equals(_stamp)) {
+            _command = Main.read();
+        }
+        _command = Main.execute(_command, args);
+        _command.save();
+        _stamp = stamp();
+    }
+
+    /** Returns the sizes and modification times of the files the state
+     *  of the repository is kept in, which change whenever it does. */
+    private static String stamp() {
+        File repo = new File(System.getProperty("user.dir"), ".gitlet");
+        StringBuilder result = new StringBuilder();
+        for (String name : STATE_FILES) {
+            stamp(new File(repo, name), result);
+        }
+        for (String dir : STATE_DIRS) {
+            String[] names = new File(repo, dir).list();
+            if (names != null) {
+                Arrays.sort(names);
+                for (String name : names) {
+                    stamp(new File(new File(repo, dir), name), result);
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /** Appends the name, size and modification time of FILE to
+     *  RESULT. */
+    private static void stamp(File file, StringBuilder result) {
+        result.append(file.getName()).append(' ');
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(
+                file.toPath(), BasicFileAttributes.class);
+            result.append(attrs.size()).append(' ')
+                .append(attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+        } catch (IOException excp) {
+            result.append('-');
+        }
+        result.append('\n');
+    }
+
+    /** Has the daemon of the repository in the working directory run the
+     *  command ARGS, copying its output to standard output, and returns
+     *  its exit status, or -1 if there is no daemon to run it. */
+    static int forward(String... args) {
+        File socket = socket();
+        if (args.length == 0 || !forwarded(args[0])
+            || "off".equals(System.getenv("GITLET_DAEMON"))
+            || !socket.exists()) {
+            return -1;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(socket.toPath()));
+        } catch (IOException excp) {
+            return -1;
+        }
+        try (SocketChannel client = channel) {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(client)));
+            ByteArrayOutputStream request = Protocol.body();
+            DataOutputStream body = new DataOutputStream(request);
+            body.writeInt(args.length);
+            for (String arg : args) {
+                body.writeUTF(arg);
+            }
+            Protocol.writeFrame(out, RUN, request.toByteArray());
+            out.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(client), BUFFER_SIZE));
+            OutputStream stdout = new FileOutputStream(FileDescriptor.out);
+            while (true) {
+                byte[] frame = Protocol.readFrame(in);
+                if (frame[0] == OUTPUT) {
+                    try {
+                        stdout.write(frame, 1, frame.length - 1);
+                    } catch (IOException excp) {
+                        return 0;
+                    }
+                } else if (frame[0] == DONE) {
+                    DataInputStream done = new DataInputStream(
+                        new ByteArrayInputStream(frame, 1, frame.length - 1));
+                    int status = done.readInt();
+                    String failure = done.readUTF();
+                    if (!failure.isEmpty()) {
+                        System.err.println(failure);
+                    }
+                    return status;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns true if the command NAME may be run by a daemon. */
+    private static boolean forwarded(String name) {
+        return !NOT_FORWARDED.contains(name);
+    }
+
+    /** Returns the socket of the daemon of the repository in the working
+     *  directory. */
+    private static File socket() {
+        return new File(new File(System.getProperty("user.dir"), ".gitlet"),
+                        "daemon.sock");
+    }
+
+    /** Stream sending what is written to it as OUTPUT frames, a frame
+     *  whenever BUFFER_SIZE bytes are waiting and when flushed. */
+    private static class Output extends OutputStream {
+
+        /** A stream sending frames to OUT. */
+        Output(DataOutputStream out) {
+            _out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            _buffer.write(b);
+            if (_buffer.size() >= BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len)
+            throws IOException {
+            _buffer.write(bytes, off, len);
+            if (_buffer.size() >= BUFFER_SIZE) {
+                flush();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (_buffer.size() > 0) {
+                Protocol.writeFrame(_out, OUTPUT, _buffer.toByteArray());
+                _buffer.reset();
+            }
+            _out.flush();
+        }
+
+        /** Where the frames are sent. */
+        private DataOutputStream _out;
+        /** Output not sent yet. */
+        private ByteArrayOutputStream _buffer = new ByteArrayOutputStream();
+    }
+
+    /** Request to run a command. */
+    static final byte RUN = 1;
+    /** Response holding output of the command. */
+    static final byte OUTPUT = 2;
+    /** Response ending the output of the command, with its status. */
+    static final byte DONE = 3;
+
+    /** Commands that are never forwarded to a daemon. */
+    private static final List<String> NOT_FORWARDED =
+        Arrays.asList("init", "generate", "daemon", "serve", "batch");
+    /** Files of .gitlet holding the state of the repository. */
+    private static final String[] STATE_FILES = {
+        "data", "journal", "commits"
+    };
+    /** Directories of .gitlet holding the state of the repository. */
+    private static final String[] STATE_DIRS = { "refs", "objects/pack" };
+    /** Size of the buffers of a connection. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** State of the repository, or null if it must be loaded again. */
+    private Command _command;
+    /** Stamp of the files of the state when the daemon last saved it. */
+    private String _stamp;
+}
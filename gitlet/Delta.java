@@ -0,0 +1,128 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+
+/** Encodes one byte array as a delta against another.  A delta starts
+ *  with the lengths of the base and the target as varints, followed by
+ *  instructions.  An instruction byte with the high bit set copies a run
+ *  of the base (its offset and length follow as varints); otherwise the
+ *  byte is the length, 1 to 127, of literal bytes that follow it.
+ *  @author Amy Kwon
+ */
+class Delta {
+
+    /** Returns the delta that turns BASE into TARGET. */
+    static byte[] create(byte[] base, byte[] target) {
+        HashMap<Integer, Integer> blocks = new HashMap<Integer, Integer>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(blockHash(base, i), i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        int literal = 0;
+        int i = 0;
+        while (i < target.length) {
+            int match = -1, length = 0;
+            if (i + BLOCK <= target.length) {
+                Integer start = blocks.get(blockHash(target, i));
+                if (start != null) {
+                    match = start;
+                    while (match + length < base.length
+                           && i + length < target.length
+                           && base[match + length] == target[i + length]) {
+                        length += 1;
+                    }
+                }
+            }
+            if (length >= BLOCK) {
+                writeLiteral(out, target, literal, i);
+                out.write(COPY);
+                writeVarint(out, match);
+                writeVarint(out, length);
+                i += length;
+                literal = i;
+            } else {
+                i += 1;
+            }
+        }
+        writeLiteral(out, target, literal, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        if (readVarint(delta, pos) != base.length) {
+            throw new IllegalArgumentException("delta base mismatch");
+        }
+        byte[] target = new byte[readVarint(delta, pos)];
+        int t = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]++] & 0xff;
+            if ((op & COPY) != 0) {
+                int offset = readVarint(delta, pos);
+                int length = readVarint(delta, pos);
+                System.arraycopy(base, offset, target, t, length);
+                t += length;
+            } else {
+                System.arraycopy(delta, pos[0], target, t, op);
+                pos[0] += op;
+                t += op;
+            }
+        }
+        if (t != target.length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return target;
+    }
+
+    /** Writes TARGET[FROM .. TO) to OUT as literal instructions. */
+    private static void writeLiteral(ByteArrayOutputStream out,
+                                     byte[] target, int from, int to) {
+        while (from < to) {
+            int length = Math.min(to - from, MAX_LITERAL);
+            out.write(length);
+            out.write(target, from, length);
+            from += length;
+        }
+    }
+
+    /** Returns the hash of the BLOCK bytes of DATA starting at START. */
+    private static int blockHash(byte[] data, int start) {
+        int result = 0;
+        for (int k = start; k < start + BLOCK; k += 1) {
+            result = 31 * result + data[k];
+        }
+        return result;
+    }
+
+    /** Writes non-negative VALUE to OUT as a varint. */
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /** Returns the varint of DATA at POS[0], advancing POS[0] past it. */
+    static int readVarint(byte[] data, int[] pos) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = data[pos[0]++] & 0xff;
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+    }
+
+    /** Length of the blocks of the base that copies are searched for. */
+    private static final int BLOCK = 16;
+    /** Flag of an instruction byte that copies from the base. */
+    private static final int COPY = 0x80;
+    /** Longest run of literal bytes in one instruction. */
+    private static final int MAX_LITERAL = 0x7f;
+}
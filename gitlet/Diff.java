@@ -0,0 +1,198 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/** Line diff of two texts by Myers' algorithm in its linear-space form:
+ *  each range is split at the middle snake of its shortest edit script
+ *  and the halves are compared in turn, so that only two vectors of the
+ *  size of the ranges are kept beside the lines.  Lines are compared as
+ *  numbers, each distinct line getting its own, and common prefixes and
+ *  suffixes are trimmed before any search.
+ *  @author Amy Kwon
+ */
+class Diff {
+
+    /** A change replacing the lines [aStart, aEnd) of the first text by
+     *  the lines [bStart, bEnd) of the second. */
+    static class Hunk {
+
+        /** A hunk replacing [ASTART, AEND) by [BSTART, BEND). */
+        Hunk(int aStart, int aEnd, int bStart, int bEnd) {
+            _aStart = aStart;
+            _aEnd = aEnd;
+            _bStart = bStart;
+            _bEnd = bEnd;
+        }
+
+        /** Returns the first line of the first text replaced. */
+        int aStart() {
+            return _aStart;
+        }
+
+        /** Returns the line of the first text past those replaced. */
+        int aEnd() {
+            return _aEnd;
+        }
+
+        /** Returns the first line of the second text inserted. */
+        int bStart() {
+            return _bStart;
+        }
+
+        /** Returns the line of the second text past those inserted. */
+        int bEnd() {
+            return _bEnd;
+        }
+
+        /** First line of the first text replaced. */
+        private int _aStart;
+        /** Line of the first text just past those replaced. */
+        private int _aEnd;
+        /** First line of the second text inserted. */
+        private int _bStart;
+        /** Line of the second text just past those inserted. */
+        private int _bEnd;
+    }
+
+    /** Returns the lines of TEXT, each with its line terminator, if it
+     *  has one, so that joining them gives back TEXT. */
+    static List<String> lines(String text) {
+        ArrayList<String> result = new ArrayList<String>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            end = end < 0 ? text.length() : end + 1;
+            result.add(text.substring(start, end));
+            start = end;
+        }
+        return result;
+    }
+
+    /** Returns the hunks that turn the lines A into the lines B, in
+     *  order and with none adjacent to another. */
+    static List<Hunk> diff(List<String> a, List<String> b) {
+        HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        Diff diff = new Diff(number(a, ids), number(b, ids));
+        diff.compare(0, a.size(), 0, b.size());
+        return diff._hunks;
+    }
+
+    /** Returns the numbers of LINES, numbering new lines in IDS. */
+    private static int[] number(List<String> lines,
+                                HashMap<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            Integer id = ids.get(lines.get(i));
+            if (id == null) {
+                id = ids.size();
+                ids.put(lines.get(i), id);
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+
+    /** A diff of the numbered lines A and B. */
+    private Diff(int[] a, int[] b) {
+        _a = a;
+        _b = b;
+        int size = 2 * (a.length + b.length + 1) + 2;
+        _forward = new int[size];
+        _backward = new int[size];
+        _hunks = new ArrayList<Hunk>();
+    }
+
+    /** Adds the hunks turning A[ALO, AHI) into B[BLO, BHI). */
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && _a[aLo] == _b[bLo]) {
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && _a[aHi - 1] == _b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            if (aLo < aHi || bLo < bHi) {
+                add(aLo, aHi, bLo, bHi);
+            }
+            return;
+        }
+        int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+        compare(aLo, snake[0], bLo, snake[1]);
+        compare(snake[2], aHi, snake[3], bHi);
+    }
+
+    /** Returns the start and end, as {aStart, bStart, aEnd, bEnd}, of
+     *  the middle snake of a shortest edit script turning A[ALO, AHI)
+     *  into B[BLO, BHI), which differ in their first and last lines. */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo, m = bHi - bLo, delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int off = n + m + 1;
+        _forward[off + 1] = 0;
+        _backward[off + 1] = 0;
+        for (int d = 0; d <= (n + m + 1) / 2; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && _forward[off + k - 1]
+                                    < _forward[off + k + 1])
+                    ? _forward[off + k + 1] : _forward[off + k - 1] + 1;
+                int y = x - k, xs = x, ys = y;
+                while (x < n && y < m && _a[aLo + x] == _b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                _forward[off + k] = x;
+                int r = delta - k;
+                if (odd && r >= -(d - 1) && r <= d - 1
+                    && x + _backward[off + r] >= n) {
+                    return new int[] {aLo + xs, bLo + ys, aLo + x, bLo + y};
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && _backward[off + k - 1]
+                                    < _backward[off + k + 1])
+                    ? _backward[off + k + 1] : _backward[off + k - 1] + 1;
+                int y = x - k, xs = x, ys = y;
+                while (x < n && y < m
+                       && _a[aHi - 1 - x] == _b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                _backward[off + k] = x;
+                int f = delta - k;
+                if (!odd && f >= -d && f <= d
+                    && x + _forward[off + f] >= n) {
+                    return new int[] {aHi - x, bHi - y, aHi - xs, bHi - ys};
+                }
+            }
+        }
+        throw new IllegalStateException("no middle snake");
+    }
+
+    /** Adds the hunk replacing A[ASTART, AEND) by B[BSTART, BEND),
+     *  joining it to the last hunk if they touch. */
+    private void add(int aStart, int aEnd, int bStart, int bEnd) {
+        int last = _hunks.size() - 1;
+        if (last >= 0 && _hunks.get(last).aEnd() == aStart
+            && _hunks.get(last).bEnd() == bStart) {
+            Hunk prev = _hunks.remove(last);
+            _hunks.add(new Hunk(prev.aStart(), aEnd, prev.bStart(), bEnd));
+        } else {
+            _hunks.add(new Hunk(aStart, aEnd, bStart, bEnd));
+        }
+    }
+
+    /** Numbered lines of the first text. */
+    private int[] _a;
+    /** Numbered lines of the second text. */
+    private int[] _b;
+    /** Furthest reach of the forward search on each diagonal. */
+    private int[] _forward;
+    /** Furthest reach of the backward search on each diagonal. */
+    private int[] _backward;
+    /** Hunks found so far, in order. */
+    private ArrayList<Hunk> _hunks;
+}
@@ -0,0 +1,416 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+/** Builder of a synthetic repository for load and scaling tests, started
+ *  by the generate command in place of init.  It runs commands in this
+ *  process on a history drawn from a seeded random source, so that the
+ *  same options give the same repository, down to its commit ids when
+ *  run in the same time zone.  Usage:
+ *
+ *      java gitlet.Main generate [--OPTION VALUE]...
+ *
+ *  where the options, with their defaults, are
+ *
+ *      --seed N      seed of the random source (61)
+ *      --commits N   number of commits after the first (1000)
+ *      --files N     number of files of the first commit (100)
+ *      --branches N  number of branches besides master (4)
+ *      --touch N     most files changed by one commit (3)
+ *      --merges P    percentage of steps merging another branch (5)
+ *      --switches P  percentage of steps checking out another branch (10)
+ *      --binary P    percentage of new files holding binary data (10)
+ *      --size N      median size of a new file in bytes (4096)
+ *      --spread X    standard deviation of the logarithm of the sizes of
+ *                    new files (1.0)
+ *
+ *  Each other step, and each step that finds nothing to merge or check
+ *  out, commits changes to a few files: most are edits of a few lines of
+ *  a text file or bytes of a binary file, and the others add new files
+ *  or remove files.  Branches are made one by one, at the head
+ *  of the branch checked out, in the first steps that switch branches.
+ *  While the history is made, the working directory only holds the files
+ *  being committed, so that no file is ever in the way of a checkout or a
+ *  merge; at the end, master is checked out and all of its files are
+ *  written.
+ *  @author Amy Kwon
+ */
+class Generator {
+
+    /** A builder with the options in ARGS, the arguments of the generate
+     *  command. */
+    Generator(String... args) {
+        if (args.length % 2 != 1) {
+            throw Utils.error("Incorrect operands.");
+        }
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                option(args[i], args[i + 1]);
+            }
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Incorrect operands.");
+        }
+        _random = new Random(_seed);
+        _dir = new File(System.getProperty("user.dir"));
+    }
+
+    /** Sets the option NAME to VALUE. */
+    private void option(String name, String value) {
+        switch (name) {
+        case "--seed":
+            _seed = Long.parseLong(value);
+            break;
+        case "--commits":
+            _commits = count(value, 0);
+            break;
+        case "--files":
+            _files = count(value, 1);
+            break;
+        case "--branches":
+            _branches = count(value, 0);
+            break;
+        case "--touch":
+            _touch = count(value, 1);
+            break;
+        case "--merges":
+            _merges = count(value, 0);
+            break;
+        case "--switches":
+            _switches = count(value, 0);
+            break;
+        case "--binary":
+            _binary = count(value, 0);
+            break;
+        case "--size":
+            _size = count(value, 1);
+            break;
+        case "--spread":
+            _spread = Double.parseDouble(value);
+            break;
+        default:
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+
+    /** Returns VALUE as a number that is at least LEAST. */
+    private static int count(String value, int least) {
+        int result = Integer.parseInt(value);
+        if (result < least) {
+            throw Utils.error("Incorrect operands.");
+        }
+        return result;
+    }
+
+    /** Builds the repository in the working directory and returns its
+     *  state, which is left to the caller to save. */
+    Command run() {
+        OutputStream out = Main.stdout();
+        long[] time = { START };
+        Commit.setClock(() -> time[0] += SECOND * (1 + _random.nextInt(HOUR)));
+        Main.setStdout(OutputStream.nullOutputStream());
+        try {
+            _command = new Command();
+            for (int i = 0; i < _files; i += 1) {
+                _command.add(newFile());
+            }
+            _command.commit("import " + _files + " files");
+            _made = 0;
+            while (_made < _commits) {
+                int made = _made;
+                int step = _random.nextInt(PERCENT);
+                if (step < _merges ? !merge()
+                    : step >= _merges + _switches || !switchBranch()) {
+                    change();
+                }
+                if (_made != made && _made % SAVE_INTERVAL == 0) {
+                    _command.save();
+                }
+            }
+            if (!_command.currentBranch().name().equals("master")) {
+                _command.checkoutBranch("master");
+            }
+            clear();
+            checkoutAll();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Main.setStdout(out);
+            Commit.setClock(System::currentTimeMillis);
+        }
+        return _command;
+    }
+
+    /** Commits changes to up to _touch files on the branch checked out. */
+    private void change() {
+        Commit head = _command.currentBranch().head();
+        HashSet<String> touched = new HashSet<String>();
+        int count = 1 + _random.nextInt(_touch);
+        for (int i = 0; i < count; i += 1) {
+            int kind = _random.nextInt(PERCENT);
+            if (kind < NEW_FILES) {
+                String name = newFile();
+                touched.add(name);
+                _command.add(name);
+            } else if (kind >= NEW_FILES + REMOVALS
+                       || !remove(head, touched)) {
+                String name = _names.get(_random.nextInt(_names.size()));
+                if (touched.add(name)) {
+                    edit(head, name);
+                    _command.add(name);
+                }
+            }
+        }
+        _command.commit("change " + (_made + 1) + " on "
+                        + _command.currentBranch().name());
+        _made += 1;
+        clear();
+    }
+
+    /** Removes a file staged for HEAD that is not among TOUCHED, adding it
+     *  to them, and returns true, or returns false if there is none. */
+    private boolean remove(Commit head, HashSet<String> touched) {
+        if (head.getBlobs() == null) {
+            return false;
+        }
+        List<String> names = new ArrayList<String>(head.getBlobs().keySet());
+        names.removeAll(touched);
+        if (names.isEmpty()) {
+            return false;
+        }
+        names.sort(null);
+        String name = names.get(_random.nextInt(names.size()));
+        touched.add(name);
+        _command.remove(name);
+        return true;
+    }
+
+    /** Writes a new working file of a size drawn from the distribution of
+     *  sizes, and returns its name. */
+    private String newFile() {
+        boolean binary = _random.nextInt(PERCENT) < _binary;
+        String name = String.format("f%06d.%s", _names.size(),
+                                    binary ? "bin" : "txt");
+        _names.add(name);
+        int size = (int) Math.min(MAX_SIZE,
+            _size * Math.exp(_spread * _random.nextGaussian()));
+        if (binary) {
+            byte[] contents = new byte[size];
+            _random.nextBytes(contents);
+            Utils.writeContents(new File(_dir, name), contents);
+        } else {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < size) {
+                text.append(line()).append('\n');
+            }
+            Utils.writeContents(new File(_dir, name), text.toString());
+        }
+        return name;
+    }
+
+    /** Writes the working file NAME as its contents in HEAD with a few
+     *  edits, or as a new file of that name if HEAD does not track it. */
+    private void edit(Commit head, String name) {
+        Blob blob = head.trackedBlob(name);
+        byte[] old = blob == null ? new byte[0]
+            : _command.store().readBlob(blob.hash());
+        File file = new File(_dir, name);
+        int edits = 1 + _random.nextInt(MAX_EDITS);
+        if (name.endsWith(".bin")) {
+            byte[] contents = Arrays.copyOf(old, Math.max(old.length,
+                                                          EDIT_BYTES));
+            for (int i = 0; i < edits; i += 1) {
+                int at = _random.nextInt(contents.length);
+                int length = Math.min(contents.length - at,
+                                      1 + _random.nextInt(EDIT_BYTES));
+                byte[] bytes = new byte[length];
+                _random.nextBytes(bytes);
+                System.arraycopy(bytes, 0, contents, at, length);
+            }
+            Utils.writeContents(file, contents);
+        } else {
+            String text = new String(old, StandardCharsets.UTF_8);
+            ArrayList<String> lines = new ArrayList<String>();
+            if (!text.isEmpty()) {
+                lines.addAll(Arrays.asList(text.split("\n")));
+            }
+            for (int i = 0; i < edits; i += 1) {
+                int at = _random.nextInt(lines.size() + 1);
+                int kind = _random.nextInt(3);
+                if (kind == 0 || at == lines.size()) {
+                    lines.add(at, line());
+                } else if (kind == 1 || lines.size() == 1) {
+                    lines.set(at, line());
+                } else {
+                    lines.remove(at);
+                }
+            }
+            StringBuilder contents = new StringBuilder();
+            for (String line : lines) {
+                contents.append(line).append('\n');
+            }
+            Utils.writeContents(file, contents.toString());
+        }
+    }
+
+    /** Returns a line of text of random words. */
+    private String line() {
+        StringBuilder result = new StringBuilder();
+        int words = 1 + _random.nextInt(MAX_WORDS);
+        for (int i = 0; i < words; i += 1) {
+            if (i > 0) {
+                result.append(' ');
+            }
+            int length = 1 + _random.nextInt(MAX_WORD);
+            for (int j = 0; j < length; j += 1) {
+                result.append((char) ('a' + _random.nextInt(LETTERS)));
+            }
+        }
+        return result.toString();
+    }
+
+    /** Makes the next branch at the head of the branch checked out, if
+     *  there are branches left to make, or picks another branch, and
+     *  checks it out.  Returns false if there is no branch to check out. */
+    private boolean switchBranch() throws IOException {
+        List<String> names = _command.branchNames();
+        String name;
+        if (names.size() <= _branches) {
+            name = "topic" + names.size();
+            _command.branch(name);
+        } else {
+            name = other(names);
+            if (name == null) {
+                return false;
+            }
+        }
+        _command.checkoutBranch(name);
+        clear();
+        return true;
+    }
+
+    /** Merges a branch other than the one checked out into it, and
+     *  returns true if that made a commit.  A merge that fails, as one of
+     *  an ancestor does, changes nothing. */
+    private boolean merge() throws IOException {
+        String name = other(_command.branchNames());
+        if (name == null) {
+            return false;
+        }
+        Command.Snapshot snapshot = _command.snapshot();
+        try {
+            _command.merge(name);
+            _made += 1;
+            return true;
+        } catch (GitletException excp) {
+            _command.restore(snapshot);
+            return false;
+        } finally {
+            clear();
+        }
+    }
+
+    /** Returns one of the branches NAMES other than the one checked out,
+     *  or null if there is none. */
+    private String other(List<String> names) {
+        List<String> others = new ArrayList<String>(names);
+        others.remove(_command.currentBranch().name());
+        if (others.isEmpty()) {
+            return null;
+        }
+        return others.get(_random.nextInt(others.size()));
+    }
+
+    /** Deletes the working files. */
+    private void clear() {
+        List<String> files = Utils.plainFilenamesIn(_dir);
+        if (files != null) {
+            for (String name : files) {
+                Utils.restrictedDelete(new File(_dir, name));
+            }
+        }
+    }
+
+    /** Writes every file of the head of the branch checked out. */
+    private void checkoutAll() {
+        Materializer plan = new Materializer(_dir, new File(_dir, ".gitlet"),
+                _command.store(), _command.statCache());
+        TreeSet<String> names = new TreeSet<String>();
+        Map<String, String> manifest =
+            _command.currentBranch().head().getManifest();
+        names.addAll(manifest.keySet());
+        for (String name : names) {
+            plan.write(name, manifest.get(name));
+        }
+        plan.run(Command.parallelism());
+    }
+
+    /** Time of the first commit after the initial one, in milliseconds
+     *  since the epoch: the start of 2020, UTC. */
+    private static final long START = 1577836800000L;
+    /** Milliseconds in a second. */
+    private static final long SECOND = 1000;
+    /** Seconds in an hour, the most between two commits. */
+    private static final int HOUR = 3600;
+    /** Divisor of percentages. */
+    private static final int PERCENT = 100;
+    /** Percentage of the changes of a commit that add new files. */
+    private static final int NEW_FILES = 10;
+    /** Percentage of the changes of a commit that remove files. */
+    private static final int REMOVALS = 5;
+    /** Most edits to one file in one commit. */
+    private static final int MAX_EDITS = 3;
+    /** Most bytes of a binary file changed by one edit. */
+    private static final int EDIT_BYTES = 64;
+    /** Most words in a line of a text file. */
+    private static final int MAX_WORDS = 12;
+    /** Most letters in a word of a text file. */
+    private static final int MAX_WORD = 8;
+    /** Number of letters words are made of. */
+    private static final int LETTERS = 26;
+    /** Largest size of a new file in bytes. */
+    private static final int MAX_SIZE = 1 << 24;
+    /** Number of commits between saves of the state. */
+    private static final int SAVE_INTERVAL = 1000;
+
+    /** Seed of the random source. */
+    private long _seed = 61;
+    /** Number of commits to make after the first. */
+    private int _commits = 1000;
+    /** Number of files of the first commit. */
+    private int _files = 100;
+    /** Number of branches to make besides master. */
+    private int _branches = 4;
+    /** Most files changed by one commit. */
+    private int _touch = 3;
+    /** Percentage of steps merging another branch. */
+    private int _merges = 5;
+    /** Percentage of steps checking out another branch. */
+    private int _switches = 10;
+    /** Percentage of new files holding binary data. */
+    private int _binary = 10;
+    /** Median size of a new file in bytes. */
+    private int _size = 4096;
+    /** Standard deviation of the logarithm of the sizes of new files. */
+    private double _spread = 1.0;
+
+    /** Source of the history. */
+    private final Random _random;
+    /** The working directory. */
+    private final File _dir;
+    /** State of the repository being built. */
+    private Command _command;
+    /** Names of all files made so far, in the order they were made. */
+    private final ArrayList<String> _names = new ArrayList<String>();
+    /** Number of commits made after the first. */
+    private int _made;
+}
@@ -0,0 +1,150 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/** Append-only log of the changes commands make to the state of a
+ *  repository, kept in .gitlet/journal next to the checkpoint of that
+ *  state in .gitlet/data.  Each command that changes the state appends
+ *  one record and forces it to disk once; the state is the checkpoint
+ *  with every record replayed over it.  Each record is its length, its
+ *  contents and their CRC-32, so a record torn by a crash is recognized
+ *  and dropped with everything after it.  Once the journal holds LIMIT
+ *  records, a new checkpoint is written in its place.
+ *  @author Amy Kwon
+ */
+class Journal {
+
+    /** The journal of the repository REPO. */
+    Journal(File repo) {
+        _file = new File(repo, "journal");
+    }
+
+    /** Returns the contents of the whole records of the journal, oldest
+     *  first. */
+    List<byte[]> records() {
+        ArrayList<byte[]> result = new ArrayList<byte[]>();
+        _valid = 0;
+        if (!_file.exists()) {
+            return result;
+        }
+        try (InputStream file = Files.newInputStream(_file.toPath())) {
+            DataInputStream in = new DataInputStream(file);
+            long left = _file.length();
+            while (left >= HEADER) {
+                int length = in.readInt();
+                if (length < 0 || length > left - HEADER) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                if (in.readLong() != checksum(record)) {
+                    break;
+                }
+                result.add(record);
+                left -= HEADER + length;
+                _valid += HEADER + length;
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _count = result.size();
+        return result;
+    }
+
+    /** Appends RECORD to the journal and forces it to disk, first cutting
+     *  off any torn record found by records(). */
+    void append(byte[] record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(record.length);
+            out.write(record);
+            out.writeLong(checksum(record));
+            try (FileChannel channel = FileChannel.open(_file.toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                if (_valid >= 0 && channel.size() > _valid) {
+                    channel.truncate(_valid);
+                }
+                channel.position(channel.size());
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                _valid = channel.size();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _count += 1;
+    }
+
+    /** Returns true if a checkpoint should replace the journal. */
+    boolean full() {
+        return _count >= LIMIT;
+    }
+
+    /** Writes CONTENTS as the checkpoint CHECKPOINT, durably and in one
+     *  step, and empties the journal, whose records it must include. */
+    void checkpoint(File checkpoint, byte[] contents) {
+        writeDurably(checkpoint, contents);
+        _file.delete();
+        _count = 0;
+        _valid = 0;
+    }
+
+    /** Replaces FILE with CONTENTS, forcing them to disk before renaming
+     *  them into place, so FILE holds either its old or its new
+     *  contents whatever happens. */
+    static void writeDurably(File file, byte[] contents) {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp.toPath(),
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(contents);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the checksum of RECORD. */
+    private static long checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return crc.getValue();
+    }
+
+    /** Number of records after which a checkpoint is written. */
+    private static final int LIMIT = 128;
+    /** Bytes of a record besides its contents. */
+    private static final int HEADER = 4 + 8;
+
+    /** File of the journal. */
+    private File _file;
+    /** Number of records in the journal. */
+    private int _count;
+    /** Length of the whole records of the journal, or -1 if unknown. */
+    private long _valid = -1;
+}
@@ -0,0 +1,127 @@
+package gitlet;
+
+import java.util.List;
+
+/** Three-way merge of texts line by line.  The changes of each side
+ *  against the base are found with Diff, and changes of the two sides
+ *  that overlap or touch in the base form a region.  A region changed by
+ *  one side only takes that side's lines, as does one both sides changed
+ *  in the same way; any other region is a conflict, written as
+ *      <<<<<<< HEAD
+ *      (the lines of the current side)
+ *      =======
+ *      (the lines of the given side)
+ *      >>>>>>>
+ *  so that a conflict over a whole file looks as it always has.
+ *  @author Amy Kwon
+ */
+class LineMerge {
+
+    /** The merge of the texts CURRENT and GIVEN against their common
+     *  BASE. */
+    LineMerge(String base, String current, String given) {
+        _base = Diff.lines(base);
+        _current = Diff.lines(current);
+        _given = Diff.lines(given);
+        _result = new StringBuilder();
+        merge(Diff.diff(_base, _current), Diff.diff(_base, _given));
+    }
+
+    /** Returns the merged text, with markers around any conflicts. */
+    String result() {
+        return _result.toString();
+    }
+
+    /** Returns true if some region could not be merged. */
+    boolean conflicted() {
+        return _conflicted;
+    }
+
+    /** Merges the base with the hunks OURS of the current side and THEIRS
+     *  of the given side. */
+    private void merge(List<Diff.Hunk> ours, List<Diff.Hunk> theirs) {
+        int i = 0, j = 0, pos = 0;
+        while (i < ours.size() || j < theirs.size()) {
+            boolean fromOurs = j == theirs.size() || (i < ours.size()
+                && ours.get(i).aStart() <= theirs.get(j).aStart());
+            Diff.Hunk first = fromOurs ? ours.get(i) : theirs.get(j);
+            int lo = first.aStart(), hi = first.aEnd();
+            int i0 = i, j0 = j;
+            while (true) {
+                if (i < ours.size() && ours.get(i).aStart() <= hi) {
+                    hi = Math.max(hi, ours.get(i).aEnd());
+                    i += 1;
+                } else if (j < theirs.size()
+                           && theirs.get(j).aStart() <= hi) {
+                    hi = Math.max(hi, theirs.get(j).aEnd());
+                    j += 1;
+                } else {
+                    break;
+                }
+            }
+            append(_base, pos, lo);
+            if (j == j0) {
+                append(_current, side(ours, i0, i, lo, true),
+                       side(ours, i0, i, hi, false));
+            } else if (i == i0) {
+                append(_given, side(theirs, j0, j, lo, true),
+                       side(theirs, j0, j, hi, false));
+            } else {
+                region(side(ours, i0, i, lo, true),
+                       side(ours, i0, i, hi, false),
+                       side(theirs, j0, j, lo, true),
+                       side(theirs, j0, j, hi, false));
+            }
+            pos = hi;
+        }
+        append(_base, pos, _base.size());
+    }
+
+    /** Appends the region whose current lines are [CSTART, CEND) and whose
+     *  given lines are [GSTART, GEND), as a conflict unless they are the
+     *  same. */
+    private void region(int cStart, int cEnd, int gStart, int gEnd) {
+        if (_current.subList(cStart, cEnd)
+            .equals(_given.subList(gStart, gEnd))) {
+            append(_current, cStart, cEnd);
+            return;
+        }
+        _conflicted = true;
+        _result.append("<<<<<<< HEAD\n");
+        append(_current, cStart, cEnd);
+        _result.append("=======\n");
+        append(_given, gStart, gEnd);
+        _result.append(">>>>>>>\n");
+    }
+
+    /** Returns the line of a side that corresponds to line AT of the base,
+     *  where AT is the start of a region if START and its end otherwise,
+     *  and HUNKS[FROM, TO) are the hunks of that side in the region. */
+    private static int side(List<Diff.Hunk> hunks, int from, int to,
+                            int at, boolean start) {
+        if (start) {
+            Diff.Hunk hunk = hunks.get(from);
+            return hunk.bStart() - (hunk.aStart() - at);
+        }
+        Diff.Hunk hunk = hunks.get(to - 1);
+        return hunk.bEnd() + (at - hunk.aEnd());
+    }
+
+    /** Appends LINES[FROM, TO) to the result. */
+    private void append(List<String> lines, int from, int to) {
+        for (int i = from; i < to; i += 1) {
+            _result.append(lines.get(i));
+        }
+    }
+
+    /** Lines of the common ancestor. */
+    private List<String> _base;
+    /** Lines of the current side. */
+    private List<String> _current;
+    /** Lines of the given side. */
+    private List<String> _given;
+    /** The merged text. */
+    private StringBuilder _result;
+    /** Whether some region could not be merged. */
+    private boolean _conflicted;
+}
@@ -0,0 +1,113 @@
+package gitlet;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Transport to a repository on the local file system, reached directly
+ *  through its ObjectStore, Refs and CommitGraph.
+ *  @author Amy Kwon
+ */
+class LocalTransport implements Transport {
+
+    /** A transport to the repository whose objects are in STORE, whose
+     *  branches are in REFS and whose commits are in GRAPH. */
+    LocalTransport(ObjectStore store, Refs refs, CommitGraph graph) {
+        _store = store;
+        _refs = refs;
+        _graph = graph;
+    }
+
+    @Override
+    public Map<String, String> refs() {
+        HashMap<String, String> result = new HashMap<String, String>();
+        List<String> names = _refs.names();
+        if (names != null) {
+            for (String name : names) {
+                result.put(name, _refs.read(name).headHash());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean has(String hash) {
+        return _store.contains(hash);
+    }
+
+    @Override
+    public byte[] read(String hash) {
+        byte[] result = _store.read(hash);
+        if (result == null) {
+            throw new IllegalArgumentException("missing object " + hash);
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> missing(String want, Collection<String> haves) {
+        if (_store.readCommit(want) == null) {
+            throw new IllegalArgumentException("unknown commit " + want);
+        }
+        return _graph.missing(want, haves);
+    }
+
+    @Override
+    public void write(String hash, String name, byte[] contents) {
+        write(Collections.singletonList(hash),
+              Collections.singletonList(name),
+              Collections.singletonList(contents));
+    }
+
+    /** Stores each of OBJECTS as the object with the hash at the same
+     *  place in HASHES, checked by the name at the same place in NAMES as
+     *  write does, unless any of them does not match its hash, in which
+     *  case none is stored. */
+    void write(List<String> hashes, List<String> names,
+               List<byte[]> objects) {
+        for (int i = 0; i < hashes.size(); i += 1) {
+            if (!ObjectStore.matches(hashes.get(i), names.get(i),
+                                     objects.get(i))) {
+                throw new IllegalArgumentException("object "
+                    + hashes.get(i) + " does not match its hash");
+            }
+        }
+        for (int i = 0; i < hashes.size(); i += 1) {
+            _store.put(hashes.get(i), objects.get(i));
+        }
+    }
+
+    @Override
+    public void update(String name, String old, String hash) {
+        Commit head = _store.readCommit(hash);
+        if (head == null) {
+            throw new IllegalArgumentException("unknown commit " + hash);
+        }
+        Branch branch = _refs.read(name);
+        String current = branch == null ? null : branch.headHash();
+        if (current == null ? old != null
+            : !current.equals(old) || !_graph.isAncestor(current, hash)) {
+            throw new IllegalArgumentException(
+                "Please pull down remote changes before pushing.");
+        }
+        if (branch == null) {
+            branch = new Branch(name, head);
+        } else {
+            branch.setHead(head);
+        }
+        _refs.write(branch);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /** Objects of the repository. */
+    private ObjectStore _store;
+    /** Branches of the repository. */
+    private Refs _refs;
+    /** Commit graph of the repository. */
+    private CommitGraph _graph;
+}
@@ -0,0 +1,94 @@
+package gitlet;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/** Buffered destination of the entries printed by log and global-log.
+ *  The first SKIP entries offered are dropped and at most LIMIT are
+ *  written, and wanted() turns false once no more entries will be
+ *  written, either because LIMIT was reached or because the reader of
+ *  the output went away, so that the caller stops walking the history.
+ *  @author Amy Kwon
+ */
+class LogSink {
+
+    /** A sink writing to standard output that drops the first SKIP
+     *  entries and writes at most LIMIT, or all of them if LIMIT is
+     *  negative. */
+    LogSink(int skip, int limit) {
+        this(new OutputStreamWriter(Main.stdout(),
+                                    StandardCharsets.UTF_8), skip, limit);
+    }
+
+    /** A sink writing to OUT that drops the first SKIP entries and
+     *  writes at most LIMIT, or all of them if LIMIT is negative. */
+    LogSink(Writer out, int skip, int limit) {
+        _out = new BufferedWriter(out, BUFFER_SIZE);
+        _skip = skip;
+        _limit = limit;
+    }
+
+    /** Returns true if another entry may still be written. */
+    boolean wanted() {
+        return !_closed && _limit != 0;
+    }
+
+    /** Returns true if the next entry offered will be dropped, in which
+     *  case it is dropped without being formatted. */
+    boolean skip() {
+        if (_skip > 0) {
+            _skip -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /** Writes the entry of the commit with HASH, TIMESTAMP and MESSAGE,
+     *  unless no more entries are wanted. */
+    void entry(String hash, String timestamp, String message) {
+        if (!wanted()) {
+            return;
+        }
+        try {
+            _out.write("===" + NEWLINE);
+            _out.write("commit " + hash + NEWLINE);
+            _out.write("Date: " + timestamp + NEWLINE);
+            _out.write(message + NEWLINE);
+            _out.write(NEWLINE);
+        } catch (IOException excp) {
+            _closed = true;
+        }
+        if (_limit > 0) {
+            _limit -= 1;
+        }
+    }
+
+    /** Writes out any buffered entries. */
+    void flush() {
+        if (_closed) {
+            return;
+        }
+        try {
+            _out.flush();
+        } catch (IOException excp) {
+            _closed = true;
+        }
+    }
+
+    /** Size of the output buffer in characters. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Line separator of the output. */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /** Where entries are written. */
+    private Writer _out;
+    /** Number of entries still to be dropped. */
+    private int _skip;
+    /** Number of entries still to be written, or negative if unlimited. */
+    private int _limit;
+    /** Whether writing failed, which means the reader went away. */
+    private boolean _closed;
+}
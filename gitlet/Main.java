@@ -1,8 +1,14 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
@@ -10,27 +16,63 @@ import java.io.Serializable;
  */
 public class Main implements Serializable {
 
-    /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> ....
+    /** Usage: java gitlet.Main [--trace[=json]] ARGS, where ARGS contains
+     *  <COMMAND> <OPERAND> ....  The command is run by the daemon of the
+     *  repository if one is running and it is not traced, and here
+     *  otherwise.
      *  Referenced lab12. */
     public static void main(String... args) throws IOException {
-        if (args.length == 0) {
-            System.out.println("Please enter a command.");
-            System.exit(0);
+        args = Trace.configure(args);
+        int status = Trace.enabled() ? -1 : Daemon.forward(args);
+        if (status > 0) {
+            System.exit(status);
+        } else if (status == 0) {
+            return;
         }
-        Command command = read();
-        if (command == null && !args[0].equals("init")) {
-            System.out.println("Not in an initialized Gitlet directory.");
+        long start = Trace.start();
+        boolean failed = false;
+        setStdout(new BufferedOutputStream(
+            new FileOutputStream(FileDescriptor.out), BUFFER_SIZE));
+        try {
+            save(execute(read(), args));
+        } catch (GitletException excp) {
+            if (excp.getMessage() != null) {
+                System.out.println(excp.getMessage());
+            }
+            failed = true;
+        } finally {
+            System.out.flush();
+            Trace.report(args, start);
+        }
+        if (failed) {
             System.exit(0);
         }
+    }
+
+    /** Runs the command ARGS on COMMAND, the state of the repository in
+     *  the working directory, or null if it has none, and returns the
+     *  state to save.  Errors of the user are thrown as GitletExceptions
+     *  holding the message to print. */
+    static Command execute(Command command, String... args)
+        throws IOException {
+        if (args.length == 0) {
+            throw Utils.error("Please enter a command.");
+        }
+        if (args[0].equals("batch")) {
+            return new Batch(command).run(args);
+        }
+        boolean creates = args[0].equals("init")
+            || args[0].equals("generate");
+        if (command == null && !creates) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        } else if (command != null && creates) {
+            throw Utils.error("A Gitlet version-control system"
+                    + " already exists in the current directory.");
+        }
         if (args[0].equals("init")) {
-            if (command == null) {
-                command = new Command();
-            } else {
-                System.out.println("A Gitlet version-control system"
-                        + " already exists in the current directory.");
-                System.exit(0);
-            }
+            command = new Command();
+        } else if (args[0].equals("generate")) {
+            command = new Generator(args).run();
         } else if (args[0].equals("add")) {
             command.add(args[1]);
         } else if (args[0].equals("commit")) {
@@ -38,11 +80,13 @@ public class Main implements Serializable {
         } else if (args[0].equals("rm")) {
             command.remove(args[1]);
         } else if (args[0].equals("log")) {
-            command.log();
+            command.log(args);
         } else if (args[0].equals("global-log")) {
-            command.globalLog();
+            command.globalLog(args);
+        } else if (args[0].equals("diff")) {
+            command.diff(args);
         } else if (args[0].equals("find")) {
-            command.find(args[1]);
+            command.find(args);
         } else if (args[0].equals("status")) {
             command.status();
         } else if (args[0].equals("checkout")) {
@@ -55,6 +99,12 @@ public class Main implements Serializable {
             command.reset(args[1]);
         } else if (args[0].equals("merge")) {
             command.merge(args[1]);
+        } else if (args[0].equals("gc") || args[0].equals("repack")) {
+            command.gc();
+        } else if (args[0].equals("serve")) {
+            command.serve(args);
+        } else if (args[0].equals("daemon")) {
+            new Daemon(command).serve();
         } else if (args[0].equals("add-remote")) {
             command.addRemote(args);
         } else if (args[0].equals("rm-remote")) {
@@ -66,26 +116,54 @@ public class Main implements Serializable {
         } else if (args[0].equals("pull")) {
             command.pull(args[1], args[2]);
         } else {
-            System.out.println("No command with that name exists.");
-            System.exit(0);
+            throw Utils.error("No command with that name exists.");
         }
-        save(command);
+        return command;
     }
 
     /** Returns the Command after reading the data in .gitlet. */
-    private static Command read() {
+    static Command read() {
+        long start = Trace.start();
         Command command = null;
-        File read = new File(".gitlet", "data");
+        File read = new File(new File(System.getProperty("user.dir"),
+                                      ".gitlet"), "data");
         if (read.exists()) {
-            command = Utils.readObject(read, Command.class);
+            command = Command.load(read);
         }
+        Trace.stop(Trace.LOAD, start);
         return command;
     }
 
-    /** Save all the data of COMMAND class in .gitlet. */
+    /** Save all the data of COMMAND class in .gitlet, if there is
+     *  any. */
     private static void save(Command command) {
-        File save = new File(".gitlet", "data");
-        Utils.writeObject(save, command);
+        if (command != null) {
+            long start = Trace.start();
+            command.save();
+            Trace.stop(Trace.SAVE, start);
+        }
+    }
+
+    /** Returns the stream the output of commands goes to, for those that
+     *  write it in bulk rather than print it on System.out. */
+    static OutputStream stdout() {
+        return _stdout;
+    }
+
+    /** Sends all output of commands to OUT.  System.out is replaced by a
+     *  stream printing to OUT with no buffer of its own, so what commands
+     *  print and what they write in bulk reach OUT in the order they
+     *  produced it; flushing System.out writes out both. */
+    static void setStdout(OutputStream out) {
+        _stdout = out;
+        System.setOut(new PrintStream(out, false, StandardCharsets.UTF_8));
     }
 
+    /** Size of the buffer of standard output. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Stream the output of commands goes to. */
+    private static OutputStream _stdout =
+        new FileOutputStream(FileDescriptor.out);
+
 }
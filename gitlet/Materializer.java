@@ -0,0 +1,204 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** The changes checkout and reset make to the working directory, planned
+ *  first and then carried out together.  Only the files whose contents
+ *  differ from the planned blob, by hash, are touched: a file that
+ *  already holds it is left alone, mtime and all, and the StatCache
+ *  tells so from its stat data without reading it.  The contents of
+ *  every file to write are first written, on up to PARALLELISM threads,
+ *  to temporary files under .gitlet/checkout.  If any of them fails, the
+ *  temporary files are dropped, the working directory is left as it
+ *  was, and the error of the first failing file in the plan is
+ *  reported.  Otherwise each file to replace is moved aside to a backup
+ *  under .gitlet/checkout and its temporary file is renamed into place.
+ *  If a rename fails, the files already renamed are put back from their
+ *  backups, or deleted if they are new, so the working directory is
+ *  again left as it was; the backups are dropped only once every file
+ *  is in place.  Then the files to delete are deleted.
+ *  @author Amy Kwon
+ */
+class Materializer {
+
+    /** A plan for the working directory DIR of the repository REPO,
+     *  whose blobs are in STORE and whose working files are hashed
+     *  through CACHE. */
+    Materializer(File dir, File repo, ObjectStore store, StatCache cache) {
+        _dir = dir;
+        _temp = new File(repo, "checkout");
+        _store = store;
+        _cache = cache;
+        _plan = new LinkedHashMap<String, String>();
+    }
+
+    /** Plans to write the blob with HASH to the file NAME, replacing any
+     *  earlier plan for NAME. */
+    void write(String name, String hash) {
+        _plan.remove(name);
+        _plan.put(name, hash);
+    }
+
+    /** Plans to delete the file NAME, replacing any earlier plan for
+     *  NAME. */
+    void delete(String name) {
+        _plan.remove(name);
+        _plan.put(name, null);
+    }
+
+    /** Carries out the plan using up to PARALLELISM threads. */
+    void run(int parallelism) {
+        ArrayList<String> names = new ArrayList<String>();
+        ArrayList<String> hashes = new ArrayList<String>();
+        for (Map.Entry<String, String> entry : _plan.entrySet()) {
+            File file = new File(_dir, entry.getKey());
+            if (entry.getValue() != null && !(file.isFile()
+                    && entry.getValue().equals(_cache.hash(file)))) {
+                names.add(entry.getKey());
+                hashes.add(entry.getValue());
+            }
+        }
+        if (names.isEmpty()) {
+            deletions();
+            return;
+        }
+        _temp.mkdirs();
+        try {
+            stage(hashes, parallelism);
+            replace(names);
+            for (int i = 0; i < names.size(); i += 1) {
+                _cache.record(new File(_dir, names.get(i)), hashes.get(i));
+                backup(i).delete();
+            }
+        } finally {
+            for (int i = 0; i < names.size(); i += 1) {
+                temp(i).delete();
+            }
+            _temp.delete();
+        }
+        deletions();
+    }
+
+    /** Renames the Ith temporary file into place as the file with the
+     *  Ith name of NAMES for each I, first moving the file it replaces,
+     *  if any, to the Ith backup.  If any move fails, undoes the ones
+     *  made and throws the error; a backup that cannot be put back is
+     *  kept. */
+    private void replace(List<String> names) {
+        boolean[] saved = new boolean[names.size()];
+        int done = 0;
+        try {
+            for (; done < names.size(); done += 1) {
+                File file = new File(_dir, names.get(done));
+                if (file.exists()) {
+                    Files.move(file.toPath(), backup(done).toPath(),
+                               StandardCopyOption.ATOMIC_MOVE);
+                    saved[done] = true;
+                }
+                Files.move(temp(done).toPath(), file.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException excp) {
+            for (int i = Math.min(done, names.size() - 1); i >= 0; i -= 1) {
+                File file = new File(_dir, names.get(i));
+                try {
+                    if (saved[i]) {
+                        Files.move(backup(i).toPath(), file.toPath(),
+                                   StandardCopyOption.REPLACE_EXISTING,
+                                   StandardCopyOption.ATOMIC_MOVE);
+                    } else if (i < done) {
+                        Files.deleteIfExists(file.toPath());
+                    }
+                } catch (IOException undo) {
+                    excp.addSuppressed(undo);
+                }
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Deletes the files planned to be deleted that exist. */
+    private void deletions() {
+        for (Map.Entry<String, String> entry : _plan.entrySet()) {
+            File file = new File(_dir, entry.getKey());
+            if (entry.getValue() == null && file.exists()) {
+                Utils.restrictedDelete(file);
+            }
+        }
+        _plan.clear();
+    }
+
+    /** Writes the blob with the Ith hash of HASHES to the Ith temporary
+     *  file for each I, using up to PARALLELISM threads, and throws the
+     *  error of the first one that failed, if any. */
+    private void stage(List<String> hashes, int parallelism) {
+        if (parallelism <= 1 || hashes.size() <= THRESHOLD) {
+            for (int i = 0; i < hashes.size(); i += 1) {
+                _store.writeBlob(hashes.get(i), temp(i));
+            }
+            return;
+        }
+        ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < hashes.size(); i += 1) {
+            final int k = i;
+            tasks.add(() -> {
+                _store.writeBlob(hashes.get(k), temp(k));
+                return null;
+            });
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try {
+            for (Future<Void> result : pool.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (ExecutionException excp) {
+            Throwable cause = excp.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalArgumentException(cause.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Returns the temporary file of the Ith file written. */
+    private File temp(int i) {
+        return new File(_temp, Integer.toString(i));
+    }
+
+    /** Returns the backup of the file replaced by the Ith file written. */
+    private File backup(int i) {
+        return new File(_temp, i + ".old");
+    }
+
+    /** Smallest number of files written on more than one thread. */
+    private static final int THRESHOLD = 64;
+
+    /** Working directory. */
+    private File _dir;
+    /** Directory of the temporary files. */
+    private File _temp;
+    /** Store the blobs are read from. */
+    private ObjectStore _store;
+    /** Hashes of the working files. */
+    private StatCache _cache;
+    /** Names of the files to change mapped to the hashes of their new
+     *  blobs, or to null if they are deleted, in the order planned. */
+    private LinkedHashMap<String, String> _plan;
+}
@@ -0,0 +1,416 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Index of the messages of all commits, kept in the repository, so that
+ *  find and global-log never read a commit object.  The message-log file
+ *  holds the id, timestamp and message of every commit in the order they
+ *  were made, behind a header giving their number.  The keys of each
+ *  commit, the hash of its message and of each word in it, go into a
+ *  file of fixed-width records sorted by key, which is binary searched
+ *  on disk, plus a short unsorted file of recent records that is merged
+ *  into it once it grows past LIMIT, as in CommitIndex.  Commits added
+ *  are only appended to the files when the index is saved.
+ *  @author Amy Kwon
+ */
+public class MessageIndex {
+
+    /** The message index kept in the repository directory REPO. */
+    MessageIndex(File repo) {
+        _log = new File(repo, "message-log");
+        _sorted = new File(repo, "message-keys");
+        _pending = new File(repo, "message-keys-pending");
+        _legacy = new File(repo, "message-index");
+        _added = new ArrayList<String[]>();
+        _end = HEADER;
+        if (_log.length() >= HEADER) {
+            try (RandomAccessFile in = new RandomAccessFile(_log, "r")) {
+                long count = in.readLong(), end = in.readLong();
+                if (count >= 0 && count <= Integer.MAX_VALUE
+                    && end >= HEADER && end <= in.length()) {
+                    _count = (int) count;
+                    _end = end;
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
+    /** Adds the commit with HASH, made after all those indexed, reading
+     *  it from STORE. */
+    void add(String hash, ObjectStore store) {
+        Commit commit = store.readCommit(hash);
+        _added.add(new String[] {
+            commit.getHash(), commit.getTimestamp(), commit.getMessage()
+        });
+    }
+
+    /** Appends the commits added since the last save to the files, the
+     *  keys first, so that a crash leaves at most keys past the end of
+     *  the log, which are ignored. */
+    void save() {
+        if (_added.isEmpty()) {
+            return;
+        }
+        if (_count == 0) {
+            _sorted.delete();
+            _pending.delete();
+            _legacy.delete();
+        }
+        ByteArrayOutputStream keys = new ByteArrayOutputStream();
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(log);
+            for (int i = 0; i < _added.size(); i += 1) {
+                String[] entry = _added.get(i);
+                for (String key : keys(entry[2])) {
+                    keys.write(record(key, _count + i, entry[0]));
+                }
+                out.write(entry[0].getBytes(StandardCharsets.US_ASCII));
+                out.writeUTF(entry[1]);
+                byte[] message = entry[2].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(message.length);
+                out.write(message);
+            }
+            try (FileOutputStream pending
+                     = new FileOutputStream(_pending, true)) {
+                keys.writeTo(pending);
+            }
+            try (RandomAccessFile file = new RandomAccessFile(_log, "rw")) {
+                file.seek(_end);
+                file.write(log.toByteArray());
+                _end += log.size();
+                _count += _added.size();
+                file.setLength(_end);
+                file.seek(0);
+                file.writeLong(_count);
+                file.writeLong(_end);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _added.clear();
+        if (_pending.length() > (long) LIMIT * RECORD) {
+            merge();
+        }
+    }
+
+    /** Returns the number of commits indexed. */
+    public int size() {
+        return _count + _added.size();
+    }
+
+    /** Offers the id, timestamp and message of every commit, oldest
+     *  first, to SINK, until it wants no more. */
+    void entries(LogSink sink) {
+        scan((hash, timestamp, message) -> {
+            if (!sink.skip()) {
+                sink.entry(hash, timestamp, message);
+            }
+            return sink.wanted();
+        });
+    }
+
+    /** Returns the ids of the commits whose message is MESSAGE, oldest
+     *  first. */
+    public List<String> exact(String message) {
+        return new ArrayList<String>(lookup(key("m", message)).values());
+    }
+
+    /** Returns the ids of the commits whose message contains every word
+     *  of QUERY, ignoring case, oldest first. */
+    public List<String> words(String query) {
+        TreeMap<Integer, String> result = null;
+        for (String word : tokenize(query)) {
+            TreeMap<Integer, String> found = lookup(key("w", word));
+            if (result == null) {
+                result = found;
+            } else {
+                result.keySet().retainAll(found.keySet());
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result == null ? new ArrayList<String>()
+            : new ArrayList<String>(result.values());
+    }
+
+    /** Returns the ids of the commits whose message contains TEXT, oldest
+     *  first. */
+    public List<String> containing(String text) {
+        ArrayList<String> result = new ArrayList<String>();
+        scan((hash, timestamp, message) -> {
+            if (message.contains(text)) {
+                result.add(hash);
+            }
+            return true;
+        });
+        return result;
+    }
+
+    /** Receives the commits read by scan. */
+    private interface Visitor {
+        /** Receives the commit with HASH, TIMESTAMP and MESSAGE, and
+         *  returns true if more are wanted. */
+        boolean visit(String hash, String timestamp, String message);
+    }
+
+    /** Offers every commit, oldest first, to VISITOR until it wants no
+     *  more, reading the log from the start. */
+    private void scan(Visitor visitor) {
+        if (_count > 0) {
+            try (DataInputStream in = new DataInputStream(
+                     new BufferedInputStream(new FileInputStream(_log),
+                                             BUFFER))) {
+                in.skipNBytes(HEADER);
+                byte[] hash = new byte[Utils.UID_LENGTH];
+                for (int i = 0; i < _count; i += 1) {
+                    in.readFully(hash);
+                    String timestamp = in.readUTF();
+                    byte[] message = new byte[in.readInt()];
+                    in.readFully(message);
+                    if (!visitor.visit(
+                            new String(hash, StandardCharsets.US_ASCII),
+                            timestamp,
+                            new String(message, StandardCharsets.UTF_8))) {
+                        return;
+                    }
+                }
+            } catch (EOFException excp) {
+                throw new IllegalArgumentException("truncated message log");
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        for (String[] entry : _added) {
+            if (!visitor.visit(entry[0], entry[1], entry[2])) {
+                return;
+            }
+        }
+    }
+
+    /** Returns the ids of the commits with KEY, by their position. */
+    private TreeMap<Integer, String> lookup(String key) {
+        TreeMap<Integer, String> result = new TreeMap<Integer, String>();
+        byte[] target = key.getBytes(StandardCharsets.US_ASCII);
+        if (_sorted.exists()) {
+            try (RandomAccessFile file = new RandomAccessFile(_sorted, "r")) {
+                long count = file.length() / RECORD;
+                long low = 0, high = count;
+                byte[] record = new byte[RECORD];
+                while (low < high) {
+                    long mid = (low + high) >>> 1;
+                    read(file, mid, record);
+                    if (Arrays.compare(record, 0, KEY, target, 0, KEY) < 0) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                for (long i = low; i < count; i += 1) {
+                    read(file, i, record);
+                    if (!found(record, target, result)) {
+                        break;
+                    }
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        for (byte[] record : pending()) {
+            found(record, target, result);
+        }
+        for (int i = 0; i < _added.size(); i += 1) {
+            String[] entry = _added.get(i);
+            if (keys(entry[2]).contains(key)) {
+                result.put(_count + i, entry[0]);
+            }
+        }
+        return result;
+    }
+
+    /** Returns true if RECORD has the key TARGET, and if so puts its
+     *  commit into RESULT by position, unless it is past the end of the
+     *  log. */
+    private boolean found(byte[] record, byte[] target,
+                          TreeMap<Integer, String> result) {
+        if (!Arrays.equals(record, 0, KEY, target, 0, KEY)) {
+            return false;
+        }
+        int position = ((record[KEY] & 0xff) << 24)
+            | ((record[KEY + 1] & 0xff) << 16)
+            | ((record[KEY + 2] & 0xff) << 8) | (record[KEY + 3] & 0xff);
+        if (position < _count) {
+            result.put(position, new String(record, KEY + 4,
+                                            Utils.UID_LENGTH,
+                                            StandardCharsets.US_ASCII));
+        }
+        return true;
+    }
+
+    /** Reads record I of FILE into RECORD. */
+    private static void read(RandomAccessFile file, long i, byte[] record)
+        throws IOException {
+        file.seek(i * RECORD);
+        file.readFully(record);
+    }
+
+    /** Returns the records not yet merged into the sorted file, sorted. */
+    private List<byte[]> pending() {
+        ArrayList<byte[]> result = new ArrayList<byte[]>();
+        if (_pending.exists()) {
+            byte[] contents = Utils.readContents(_pending);
+            for (int i = 0; i + RECORD <= contents.length; i += RECORD) {
+                result.add(Arrays.copyOfRange(contents, i, i + RECORD));
+            }
+        }
+        result.sort(Arrays::compare);
+        return result;
+    }
+
+    /** Merges the pending records into the sorted file, which is streamed
+     *  into a temporary file that then replaces it. */
+    private void merge() {
+        List<byte[]> pending = pending();
+        File temp = new File(_sorted.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(temp),
+                                          BUFFER))) {
+            byte[] last = null;
+            int next = 0;
+            if (_sorted.exists()) {
+                try (DataInputStream in = new DataInputStream(
+                         new BufferedInputStream(new FileInputStream(_sorted),
+                                                 BUFFER))) {
+                    long count = _sorted.length() / RECORD;
+                    for (long i = 0; i < count; i += 1) {
+                        byte[] record = new byte[RECORD];
+                        in.readFully(record);
+                        for (; next < pending.size()
+                                 && Arrays.compare(pending.get(next),
+                                                   record) < 0;
+                             next += 1) {
+                            last = write(out, pending.get(next), last);
+                        }
+                        last = write(out, record, last);
+                    }
+                }
+            }
+            for (; next < pending.size(); next += 1) {
+                last = write(out, pending.get(next), last);
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), _sorted.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _pending.delete();
+    }
+
+    /** Writes RECORD to OUT unless it equals LAST, the record written
+     *  before it, and returns RECORD. */
+    private static byte[] write(DataOutputStream out, byte[] record,
+                                byte[] last) throws IOException {
+        if (last == null || !Arrays.equals(record, last)) {
+            out.write(record);
+        }
+        return record;
+    }
+
+    /** Returns the record giving the commit with HASH at POSITION for
+     *  KEY. */
+    private static byte[] record(String key, int position, String hash) {
+        byte[] result = new byte[RECORD];
+        System.arraycopy(key.getBytes(StandardCharsets.US_ASCII), 0,
+                         result, 0, KEY);
+        result[KEY] = (byte) (position >>> 24);
+        result[KEY + 1] = (byte) (position >>> 16);
+        result[KEY + 2] = (byte) (position >>> 8);
+        result[KEY + 3] = (byte) position;
+        System.arraycopy(hash.getBytes(StandardCharsets.US_ASCII), 0,
+                         result, KEY + 4, Utils.UID_LENGTH);
+        return result;
+    }
+
+    /** Returns the keys of a commit with MESSAGE: that of the message and
+     *  those of its words. */
+    private static TreeSet<String> keys(String message) {
+        TreeSet<String> result = new TreeSet<String>();
+        result.add(key("m", message));
+        for (String word : tokenize(message)) {
+            result.add(key("w", word));
+        }
+        return result;
+    }
+
+    /** Returns the key of TEXT of the given KIND. */
+    private static String key(String kind, String text) {
+        return Utils.sha1(kind, text);
+    }
+
+    /** Returns the distinct lower-case words of TEXT. */
+    private static TreeSet<String> tokenize(String text) {
+        TreeSet<String> result = new TreeSet<String>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    /** Length of the header of the log: the number of commits and the
+     *  offset of the end of the last. */
+    private static final int HEADER = 16;
+    /** Length of a key in a record. */
+    private static final int KEY = Utils.UID_LENGTH;
+    /** Length of a record: a key, a position and a commit id. */
+    private static final int RECORD = KEY + 4 + Utils.UID_LENGTH;
+    /** Largest number of records kept out of the sorted file. */
+    private static final int LIMIT = 4096;
+    /** Size of the buffers of the streams over the files. */
+    private static final int BUFFER = 1 << 16;
+
+    /** File of the ids, timestamps and messages of the commits. */
+    private File _log;
+    /** File of all merged records, sorted. */
+    private File _sorted;
+    /** File of the recent records, unsorted. */
+    private File _pending;
+    /** File of the serialized index of earlier versions. */
+    private File _legacy;
+    /** Number of commits in the log. */
+    private int _count;
+    /** Offset of the end of the last commit in the log. */
+    private long _end;
+    /** Ids, timestamps and messages of the commits added since the last
+     *  save, oldest first. */
+    private ArrayList<String[]> _added;
+}
@@ -0,0 +1,376 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Content-addressed store of objects kept under .gitlet/objects.
+ *  Each loose object lives in objects/XX/YYYY..., where XX is the first
+ *  two characters of its hash, until gc moves it into a Pack under
+ *  objects/pack.  Blobs are stored as their raw contents and commits as
+ *  encoded Commit objects.
+ *  @author Amy Kwon
+ */
+public class ObjectStore {
+
+    /** Object store of the gitlet repository REPO. */
+    public ObjectStore(File repo) {
+        _objects = new File(repo, "objects");
+        _packDir = new File(_objects, "pack");
+    }
+
+    /** Creates the objects directory if it does not exist yet. */
+    public void init() {
+        _objects.mkdirs();
+    }
+
+    /** Returns the file that holds the object with HASH while it is
+     *  loose. */
+    public File file(String hash) {
+        return Utils.join(_objects, hash.substring(0, 2), hash.substring(2));
+    }
+
+    /** Returns true if the object with HASH is in the store. */
+    public boolean contains(String hash) {
+        if (file(hash).exists()) {
+            return true;
+        }
+        for (Pack pack : packs()) {
+            if (pack.contains(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the raw contents of the object with HASH, or null if there
+     *  is no such object. */
+    public byte[] read(String hash) {
+        long start = Trace.start();
+        File file = file(hash);
+        byte[] result = null;
+        if (file.exists()) {
+            result = Utils.readContents(file);
+        } else {
+            for (Pack pack : packs()) {
+                result = pack.read(hash);
+                if (result != null) {
+                    break;
+                }
+            }
+        }
+        if (result != null) {
+            Trace.count(Trace.LOADED, 1);
+        }
+        Trace.stop(Trace.READ, start);
+        return result;
+    }
+
+    /** Stores the contents of BLOB unless they are already stored,
+     *  copying them from its source file without reading them into
+     *  memory. */
+    public void putBlob(Blob blob) {
+        if (!contains(blob.hash())) {
+            long start = Trace.start();
+            File temp = temp(blob.hash());
+            try {
+                Files.copy(blob.source().toPath(), temp.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            install(temp, blob.hash());
+            Trace.count(Trace.STORED, 1);
+            Trace.stop(Trace.WRITE, start);
+        }
+    }
+
+    /** Returns the raw contents of the blob with HASH. */
+    public byte[] readBlob(String hash) {
+        byte[] result = read(hash);
+        if (result == null) {
+            throw new IllegalArgumentException("missing object " + hash);
+        }
+        return result;
+    }
+
+    /** Writes the contents of the blob with HASH to FILE, replacing what
+     *  it held.  A loose blob is transferred from its object file by the
+     *  file system, so its contents never pass through the heap; a
+     *  packed one is inflated first. */
+    public void writeBlob(String hash, File file) {
+        File object = file(hash);
+        if (!object.exists()) {
+            Utils.writeContents(file, readBlob(hash));
+            return;
+        }
+        long start = Trace.start();
+        try (FileChannel in = FileChannel.open(object.toPath(),
+                                               StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(file.toPath(),
+                     StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            for (long done = 0; done < size;) {
+                done += in.transferTo(done, size - done, out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Trace.count(Trace.LOADED, 1);
+        Trace.stop(Trace.READ, start);
+    }
+
+    /** Returns the contents of the blob with HASH as a String. */
+    public String readBlobAsString(String hash) {
+        return new String(readBlob(hash), StandardCharsets.UTF_8);
+    }
+
+    /** Stores COMMIT unless it is already stored. */
+    public void putCommit(Commit commit) {
+        commit.attach(this);
+        if (!contains(commit.getHash())) {
+            write(commit.getHash(), commit.encode());
+        }
+        cache(commit.getHash(), commit);
+    }
+
+    /** Returns the commit with HASH, or null if there is no such commit.
+     *  The most recently used commits and trees are kept in a bounded
+     *  cache, so walking a long history holds only a few of them in
+     *  memory. */
+    public Commit readCommit(String hash) {
+        Object cached = cached(hash);
+        if (cached != null) {
+            return (Commit) cached;
+        }
+        byte[] data = read(hash);
+        if (data == null) {
+            return null;
+        }
+        Commit commit = Commit.decode(data);
+        commit.attach(this);
+        cache(hash, commit);
+        return commit;
+    }
+
+    /** Stores TREE, whose encoded CONTENTS have HASH, unless it is
+     *  already stored. */
+    void putTree(String hash, byte[] contents, Tree tree) {
+        if (!contains(hash)) {
+            write(hash, contents);
+        }
+        cache(hash, tree);
+    }
+
+    /** Returns the tree node with HASH. */
+    Tree readTree(String hash) {
+        Object cached = cached(hash);
+        if (cached != null) {
+            return (Tree) cached;
+        }
+        byte[] data = read(hash);
+        if (data == null) {
+            throw new IllegalArgumentException("missing object " + hash);
+        }
+        Tree tree = Tree.decode(data);
+        cache(hash, tree);
+        return tree;
+    }
+
+    /** Returns the commit or tree with HASH if it is in the cache, and
+     *  null otherwise.  Lookups reorder the cache, so it is locked even
+     *  to read it, as threads scanning the working files share it. */
+    private Object cached(String hash) {
+        synchronized (_cache) {
+            return _cache.get(hash);
+        }
+    }
+
+    /** Adds the commit or tree OBJECT with HASH to the cache. */
+    private void cache(String hash, Object object) {
+        synchronized (_cache) {
+            _cache.put(hash, object);
+        }
+    }
+
+    /** Returns true if CONTENTS are those of the object with HASH: the
+     *  blob of a file named NAME if NAME is not empty, and a tree node or
+     *  a commit otherwise.  A blob hashes its file name followed by its
+     *  contents, read as text before blobs were hashed as raw bytes; a
+     *  tree node hashes its contents; and a commit hashes its parent,
+     *  manifest, message and timestamp, or only the last two if it is an
+     *  initial commit or older than manifests. */
+    static boolean matches(String hash, String name, byte[] contents) {
+        if (!name.isEmpty()) {
+            return hash.equals(Utils.sha1(name, contents))
+                || hash.equals(Utils.sha1(name + new String(contents,
+                                   StandardCharsets.UTF_8)));
+        }
+        if (hash.equals(Utils.sha1("tree", contents))) {
+            return true;
+        }
+        try {
+            Commit commit = Commit.decode(contents);
+            String text = commit.getMessage() + commit.getTimestamp();
+            return hash.equals(commit.getHash())
+                && (hash.equals(Utils.sha1(commit.getParentHash()
+                                           + commit.getTree() + text))
+                    || hash.equals(Utils.sha1(text)));
+        } catch (IllegalArgumentException excp) {
+            return false;
+        }
+    }
+
+    /** Stores CONTENTS as the object with HASH unless it is already
+     *  stored. */
+    public void put(String hash, byte[] contents) {
+        if (!contains(hash)) {
+            write(hash, contents);
+        }
+    }
+
+    /** Moves every object into a single new pack, replacing the loose
+     *  objects and the old packs.  Each list in HISTORIES holds the
+     *  versions of one file, newest first, which are stored as deltas
+     *  against each other.  The loose objects and old packs are only
+     *  deleted once the new pack is durably in place. */
+    public void repack(ArrayList<ArrayList<String>> histories) {
+        HashSet<String> all = new HashSet<String>(looseObjects());
+        List<Pack> oldPacks = packs();
+        for (Pack pack : oldPacks) {
+            all.addAll(pack.hashes());
+        }
+        ArrayList<ArrayList<String>> present =
+            new ArrayList<ArrayList<String>>();
+        for (ArrayList<String> history : histories) {
+            ArrayList<String> versions = new ArrayList<String>();
+            for (String hash : history) {
+                if (all.remove(hash)) {
+                    versions.add(hash);
+                }
+            }
+            present.add(versions);
+        }
+        ArrayList<String> others = new ArrayList<String>(all);
+        others.sort(null);
+        Pack pack = Pack.write(_packDir, this, present, others);
+        for (String hash : looseObjects()) {
+            file(hash).delete();
+            file(hash).getParentFile().delete();
+        }
+        for (Pack old : oldPacks) {
+            if (!old.file().equals(pack.file())) {
+                old.delete();
+            }
+        }
+        _packs = null;
+    }
+
+    /** Returns the hashes of all loose objects. */
+    private ArrayList<String> looseObjects() {
+        ArrayList<String> result = new ArrayList<String>();
+        String[] dirs = _objects.list();
+        if (dirs != null) {
+            for (String dir : dirs) {
+                if (dir.length() != 2) {
+                    continue;
+                }
+                List<String> names =
+                    Utils.plainFilenamesIn(new File(_objects, dir));
+                for (String name : names) {
+                    if (!name.endsWith(".tmp")) {
+                        result.add(dir + name);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns all packs of this store whose index is in place, newest
+     *  first, so a pack left without one by a crash is ignored.  The
+     *  list is built whole before it is published, so threads writing
+     *  blobs at once never see it empty or half sorted; at worst two of
+     *  them build it twice. */
+    private List<Pack> packs() {
+        List<Pack> result = _packs;
+        if (result == null) {
+            ArrayList<Pack> packs = new ArrayList<Pack>();
+            File[] files = _packDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Pack pack = new Pack(file);
+                    if (file.getName().endsWith(".pack") && pack.complete()) {
+                        packs.add(pack);
+                    }
+                }
+                packs.sort((a, b) -> Long.compare(b.file().lastModified(),
+                                                  a.file().lastModified()));
+            }
+            result = Collections.unmodifiableList(packs);
+            _packs = result;
+        }
+        return result;
+    }
+
+    /** Writes CONTENTS as the object with HASH.  The object is first
+     *  written to a temporary file and then renamed into place so that a
+     *  crash never leaves a partially written object behind. */
+    private void write(String hash, byte[] contents) {
+        long start = Trace.start();
+        File temp = temp(hash);
+        Utils.writeContents(temp, contents);
+        install(temp, hash);
+        Trace.count(Trace.STORED, 1);
+        Trace.stop(Trace.WRITE, start);
+    }
+
+    /** Returns the temporary file the object with HASH is written to. */
+    private File temp(String hash) {
+        File file = file(hash);
+        file.getParentFile().mkdirs();
+        return new File(file.getParentFile(), file.getName() + ".tmp");
+    }
+
+    /** Renames TEMP into place as the object with HASH. */
+    private void install(File temp, String hash) {
+        File file = file(hash);
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Directory holding all loose objects. */
+    private File _objects;
+    /** Directory holding all packs. */
+    private File _packDir;
+    /** Packs of this store, read when first needed. */
+    private volatile List<Pack> _packs;
+    /** Recently used commits and trees by hash, least recently used
+     *  first. */
+    private final LinkedHashMap<String, Object> _cache =
+        new LinkedHashMap<String, Object>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> e) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+    /** Largest number of commits and trees kept in the cache. */
+    private static final int CACHE_SIZE = 1024;
+}
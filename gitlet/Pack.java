@@ -0,0 +1,347 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/** A pack of objects with its index, written by gc.  The pack file holds
+ *  the deflated objects one after another, each either whole or as a
+ *  Delta against another object of the same pack.  The index holds one
+ *  fixed-size record per object, sorted by hash, so that an object is
+ *  found with a binary search over the index file.
+ *  @author Amy Kwon
+ */
+public class Pack {
+
+    /** The pack stored in PACK, with its index next to it. */
+    public Pack(File pack) {
+        _pack = pack;
+        _index = indexFile(pack);
+    }
+
+    /** Returns true if both the pack and its index are in place. */
+    boolean complete() {
+        return _pack.isFile() && _index.isFile();
+    }
+
+    /** Returns the pack file. */
+    public File file() {
+        return _pack;
+    }
+
+    /** Deletes this pack and its index. */
+    public void delete() {
+        _pack.delete();
+        _index.delete();
+    }
+
+    /** Returns true if the object with HASH is in this pack. */
+    public boolean contains(String hash) {
+        return offset(hash) >= 0;
+    }
+
+    /** Returns the contents of the object with HASH, or null if it is not
+     *  in this pack. */
+    public byte[] read(String hash) {
+        long offset = offset(hash);
+        if (offset < 0) {
+            return null;
+        }
+        try (RandomAccessFile pack = new RandomAccessFile(_pack, "r")) {
+            return readAt(pack, offset);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the hashes of all objects in this pack. */
+    public ArrayList<String> hashes() {
+        ArrayList<String> result = new ArrayList<String>();
+        try (RandomAccessFile index = new RandomAccessFile(_index, "r")) {
+            int count = readHeader(index, INDEX_MAGIC);
+            byte[] raw = new byte[RAW_LENGTH];
+            for (int i = 0; i < count; i += 1) {
+                index.seek(HEADER + (long) i * RECORD);
+                index.readFully(raw);
+                result.add(toHex(raw));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Returns the object stored at OFFSET of PACK, resolving deltas. */
+    private byte[] readAt(RandomAccessFile pack, long offset)
+        throws IOException {
+        pack.seek(offset);
+        int type = pack.readByte();
+        long base = type == DELTA ? pack.readLong() : -1;
+        byte[] data = new byte[pack.readInt()];
+        pack.readFully(data);
+        data = inflate(data);
+        if (type == DELTA) {
+            data = Delta.apply(readAt(pack, base), data);
+        }
+        return data;
+    }
+
+    /** Returns the offset in the pack of the object with HASH, or -1 if
+     *  it is not in this pack. */
+    private long offset(String hash) {
+        if (!_index.exists()) {
+            return -1;
+        }
+        byte[] key = toRaw(hash);
+        byte[] raw = new byte[RAW_LENGTH];
+        try (RandomAccessFile index = new RandomAccessFile(_index, "r")) {
+            int low = 0, high = readHeader(index, INDEX_MAGIC) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                index.seek(HEADER + (long) mid * RECORD);
+                index.readFully(raw);
+                int cmp = Arrays.compareUnsigned(raw, key);
+                if (cmp == 0) {
+                    return index.readLong();
+                } else if (cmp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return -1;
+    }
+
+    /** Writes a new pack into DIR holding the objects of STORE named by
+     *  the hashes in HISTORIES and OTHERS, and returns it.  Each list in
+     *  HISTORIES holds the versions of one file, newest first; every
+     *  version but the newest is stored as a delta against the version
+     *  before it when that is smaller, up to MAX_DEPTH deltas in a row.
+     *  The objects in OTHERS are stored whole.  The objects are streamed
+     *  one at a time to a temporary file in DIR, so a pack of any size
+     *  needs memory only for the largest object and for the index.  The
+     *  pack and then its index are each forced to disk and renamed into
+     *  place, so an index never names a pack that is not whole. */
+    static Pack write(File dir, ObjectStore store,
+                      ArrayList<ArrayList<String>> histories,
+                      ArrayList<String> others) {
+        ArrayList<String> hashes = new ArrayList<String>();
+        ArrayList<Long> offsets = new ArrayList<Long>();
+        dir.mkdirs();
+        File temp = null;
+        try {
+            temp = File.createTempFile("pack-", ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(temp),
+                                              BUFFER))) {
+                out.writeInt(PACK_MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(0);
+                long position = HEADER;
+                for (ArrayList<String> history : histories) {
+                    byte[] prev = null;
+                    long prevOffset = -1;
+                    int depth = 0;
+                    for (String hash : history) {
+                        byte[] data = store.read(hash);
+                        hashes.add(hash);
+                        offsets.add(position);
+                        byte[] delta = null;
+                        if (prev != null && depth < MAX_DEPTH) {
+                            delta = deflate(Delta.create(prev, data));
+                        }
+                        byte[] whole = deflate(data);
+                        if (delta != null && delta.length < whole.length) {
+                            position += entry(out, DELTA, prevOffset, delta);
+                            depth += 1;
+                        } else {
+                            position += entry(out, WHOLE, -1, whole);
+                            depth = 0;
+                        }
+                        prev = data;
+                        prevOffset = offsets.get(offsets.size() - 1);
+                    }
+                }
+                for (String hash : others) {
+                    hashes.add(hash);
+                    offsets.add(position);
+                    position += entry(out, WHOLE, -1,
+                                      deflate(store.read(hash)));
+                }
+            }
+            try (RandomAccessFile pack = new RandomAccessFile(temp, "rw")) {
+                pack.seek(8);
+                pack.writeInt(hashes.size());
+                pack.getChannel().force(true);
+            }
+            byte[] index = index(hashes, offsets);
+            File file = new File(dir, "pack-" + Utils.sha1(index) + ".pack");
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            Journal.writeDurably(indexFile(file), index);
+            return new Pack(file);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /** Writes to OUT an object of TYPE whose deflated contents are DATA,
+     *  stored as a delta against the object at BASE if it is a DELTA, and
+     *  returns the number of bytes written. */
+    private static long entry(DataOutputStream out, int type, long base,
+                              byte[] data) throws IOException {
+        out.writeByte(type);
+        if (type == DELTA) {
+            out.writeLong(base);
+        }
+        out.writeInt(data.length);
+        out.write(data);
+        return 1 + (type == DELTA ? 8 : 0) + 4 + (long) data.length;
+    }
+
+    /** Returns the index of a pack holding the objects with HASHES at
+     *  the corresponding OFFSETS. */
+    private static byte[] index(ArrayList<String> hashes,
+                                ArrayList<Long> offsets) {
+        Integer[] order = new Integer[hashes.size()];
+        for (int i = 0; i < order.length; i += 1) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> hashes.get(a).compareTo(hashes.get(b)));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(order.length);
+            for (int i : order) {
+                out.write(toRaw(hashes.get(i)));
+                out.writeLong(offsets.get(i));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Checks the header of FILE against MAGIC and returns its count. */
+    private static int readHeader(RandomAccessFile file, int magic)
+        throws IOException {
+        file.seek(0);
+        if (file.readInt() != magic || file.readInt() != VERSION) {
+            throw new IllegalArgumentException("unknown pack format");
+        }
+        return file.readInt();
+    }
+
+    /** Returns the index file of the pack file PACK. */
+    private static File indexFile(File pack) {
+        String name = pack.getName();
+        return new File(pack.getParentFile(),
+                name.substring(0, name.length() - ".pack".length()) + ".idx");
+    }
+
+    /** Returns DATA compressed with Deflater. */
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /** Returns DATA decompressed with Inflater. */
+    private static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER];
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new IllegalArgumentException("truncated object");
+                }
+                out.write(buffer, 0, n);
+            }
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /** Returns the 20 bytes denoted by the hexadecimal HASH. */
+    static byte[] toRaw(String hash) {
+        byte[] raw = new byte[RAW_LENGTH];
+        for (int i = 0; i < RAW_LENGTH; i += 1) {
+            raw[i] = (byte) Integer.parseInt(
+                    hash.substring(2 * i, 2 * i + 2), 16);
+        }
+        return raw;
+    }
+
+    /** Returns the hexadecimal numeral of the 20 bytes RAW. */
+    static String toHex(byte[] raw) {
+        char[] result = new char[2 * raw.length];
+        for (int i = 0; i < raw.length; i += 1) {
+            result[2 * i] = HEX_DIGITS[(raw[i] >> 4) & 0xf];
+            result[2 * i + 1] = HEX_DIGITS[raw[i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** Hexadecimal digits by value. */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Magic number starting every pack file. */
+    private static final int PACK_MAGIC = 0x4750414b;
+    /** Magic number starting every index file. */
+    private static final int INDEX_MAGIC = 0x47494458;
+    /** Version of the pack and index formats. */
+    private static final int VERSION = 1;
+    /** Length of the header of pack and index files. */
+    private static final int HEADER = 12;
+    /** Length of a SHA-1 hash in bytes. */
+    private static final int RAW_LENGTH = 20;
+    /** Length of an index record: a raw hash and an offset. */
+    private static final int RECORD = RAW_LENGTH + 8;
+    /** Type of an object stored whole. */
+    private static final int WHOLE = 0;
+    /** Type of an object stored as a delta. */
+    private static final int DELTA = 1;
+    /** Longest chain of deltas gc creates. */
+    static final int MAX_DEPTH = 10;
+    /** Size of the buffers used for compression. */
+    private static final int BUFFER = 8192;
+
+    /** The pack file. */
+    private File _pack;
+    /** The index file of the pack. */
+    private File _index;
+}
@@ -0,0 +1,198 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+
+/** Addresses and frames of the protocol spoken between a SocketTransport
+ *  and a RemoteServer.  A remote served this way is named by an address
+ *  of the form gitlet://HOST:PORT, for a loopback TCP port, or unix:PATH,
+ *  for a Unix-domain socket.
+ *
+ *  Every message is a frame: its length as an int, a type byte and the
+ *  body.  A frame is at most MAX_FRAME bytes long, so a longer message,
+ *  such as one holding a large object, is sent as frames of type MORE
+ *  holding its first parts, followed by a frame of its own type holding
+ *  the rest.  Hashes travel as 20 raw bytes and objects as a hash, a length
+ *  and the contents, many to a frame; objects stored by PUT also carry
+ *  the file name of a blob, or an empty name, by which the server checks
+ *  them against their hashes.  A request is one of
+ *      REFS                      the tips of all branches
+ *      LACKING n hash...         which of the hashes the server lacks
+ *      GET n hash...             the objects with the hashes
+ *      PUT n object...           store the objects
+ *      UPDATE name hash old      point a branch at a commit if it is
+ *                                still at OLD, a flag and a hash
+ *      MISSING want n hash...    the commits WANT needs that the hashes,
+ *                                the receiver's heads, do not
+ *      SYNC                      report any failure of earlier PUTs
+ *  and every request but PUT gets one response frame, of type OK or
+ *  ERROR, in the order of the requests, so a client may send several
+ *  requests before reading their responses.
+ *  @author Amy Kwon
+ */
+class Protocol {
+
+    /** Returns true if LOCATION is the address of a served remote rather
+     *  than the path of a repository. */
+    static boolean isAddress(String location) {
+        return location.startsWith(UNIX) || location.startsWith(TCP);
+    }
+
+    /** Returns the socket address of LOCATION. */
+    static SocketAddress address(String location) {
+        if (location.startsWith(UNIX)) {
+            return UnixDomainSocketAddress.of(
+                location.substring(UNIX.length()));
+        }
+        String hostPort = location.substring(TCP.length());
+        int colon = hostPort.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("no port in " + location);
+        }
+        try {
+            return new InetSocketAddress(hostPort.substring(0, colon),
+                Integer.parseInt(hostPort.substring(colon + 1)));
+        } catch (NumberFormatException excp) {
+            throw new IllegalArgumentException("bad port in " + location);
+        }
+    }
+
+    /** Returns the protocol family of the socket address ADDRESS. */
+    static StandardProtocolFamily family(SocketAddress address) {
+        return address instanceof UnixDomainSocketAddress
+            ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET;
+    }
+
+    /** Returns a channel connected to the remote served at LOCATION. */
+    static SocketChannel connect(String location) throws IOException {
+        SocketAddress address = address(location);
+        SocketChannel channel = SocketChannel.open(family(address));
+        channel.connect(address);
+        return channel;
+    }
+
+    /** Writes to OUT a message of TYPE holding BODY, as one frame, or,
+     *  if BODY is too long for one, as MORE frames holding its first
+     *  parts followed by a frame of TYPE holding the rest. */
+    static void writeFrame(DataOutputStream out, byte type, byte[] body)
+        throws IOException {
+        int start = 0;
+        for (; body.length - start > MAX_FRAME - 1;
+             start += MAX_FRAME - 1) {
+            out.writeInt(MAX_FRAME);
+            out.writeByte(MORE);
+            out.write(body, start, MAX_FRAME - 1);
+        }
+        out.writeInt(body.length - start + 1);
+        out.writeByte(type);
+        out.write(body, start, body.length - start);
+    }
+
+    /** Reads a message from IN and returns its type byte followed by its
+     *  body.  No frame is longer than MAX_FRAME, and the body of a message
+     *  split over several frames grows only as its frames arrive, so a
+     *  bad or hostile length costs no more memory than was sent. */
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        ByteArrayOutputStream parts = null;
+        while (true) {
+            int length = in.readInt();
+            if (length < 1 || length > MAX_FRAME) {
+                throw new IOException("bad frame length " + length);
+            }
+            byte[] frame = new byte[length];
+            in.readFully(frame);
+            if (frame[0] != MORE) {
+                if (parts == null) {
+                    return frame;
+                }
+                parts.write(frame, 1, frame.length - 1);
+                byte[] result = parts.toByteArray();
+                result[0] = frame[0];
+                return result;
+            }
+            if (parts == null) {
+                parts = new ByteArrayOutputStream();
+                parts.write(0);
+            } else if (parts.size() > MAX_MESSAGE - length) {
+                throw new IOException("message too long");
+            }
+            parts.write(frame, 1, frame.length - 1);
+        }
+    }
+
+    /** Reads from the body IN of a frame a length followed by that many
+     *  bytes, and returns the bytes.  The length is checked against what
+     *  is left of the body before anything is allocated. */
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("bad object length " + length);
+        }
+        byte[] result = new byte[length];
+        in.readFully(result);
+        return result;
+    }
+
+    /** Writes HASH to OUT as raw bytes. */
+    static void writeHash(DataOutputStream out, String hash)
+        throws IOException {
+        out.write(Pack.toRaw(hash));
+    }
+
+    /** Reads a hash written by writeHash from IN. */
+    static String readHash(DataInputStream in) throws IOException {
+        byte[] raw = new byte[Utils.UID_LENGTH / 2];
+        in.readFully(raw);
+        return Pack.toHex(raw);
+    }
+
+    /** Returns a buffer for the body of a frame. */
+    static ByteArrayOutputStream body() {
+        return new ByteArrayOutputStream();
+    }
+
+    /** Request for the tips of all branches. */
+    static final byte REFS = 1;
+    /** Request for the hashes the server lacks of those sent. */
+    static final byte LACKING = 2;
+    /** Request for objects. */
+    static final byte GET = 3;
+    /** Request storing objects, which gets no response. */
+    static final byte PUT = 4;
+    /** Request pointing a branch at a commit. */
+    static final byte UPDATE = 5;
+    /** Request for the failure of earlier PUTs, if any. */
+    static final byte SYNC = 6;
+    /** Request for the commits one commit needs that others lack. */
+    static final byte MISSING = 7;
+    /** Response to a request that succeeded. */
+    static final byte OK = 0;
+    /** Response to a request that failed, holding the message. */
+    static final byte ERROR = 1;
+    /** Frame holding a part of a message continued in the next frame. */
+    static final byte MORE = -1;
+
+    /** Largest number of hashes or objects in one frame. */
+    static final int BATCH_COUNT = 256;
+    /** Size past which a frame of objects is sent. */
+    static final int BATCH_BYTES = 1 << 16;
+    /** Largest number of requests sent before reading a response. */
+    static final int WINDOW = 8;
+    /** Largest frame sent or accepted, type byte included; longer
+     *  messages are split over several frames. */
+    static final int MAX_FRAME = 1 << 23;
+    /** Largest message accepted, type byte included. */
+    static final int MAX_MESSAGE = Integer.MAX_VALUE - 8;
+
+    /** Prefix of addresses of Unix-domain sockets. */
+    private static final String UNIX = "unix:";
+    /** Prefix of addresses of TCP ports. */
+    private static final String TCP = "gitlet://";
+}
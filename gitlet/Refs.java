@@ -0,0 +1,56 @@
+package gitlet;
+
+import java.io.File;
+import java.util.List;
+
+/** Branch references of a repository, one file per branch under
+ *  .gitlet/refs, so that a command only loads the branches it uses.
+ *  @author Amy Kwon
+ */
+public class Refs {
+
+    /** Branch references of the gitlet repository REPO whose commits
+     *  live in STORE. */
+    public Refs(File repo, ObjectStore store) {
+        _refs = new File(repo, "refs");
+        _store = store;
+    }
+
+    /** Creates the refs directory if it does not exist yet. */
+    public void init() {
+        _refs.mkdirs();
+    }
+
+    /** Returns the branch with NAME, or null if it does not exist. */
+    public Branch read(String name) {
+        File file = new File(_refs, name);
+        if (!file.isFile()) {
+            return null;
+        }
+        Branch branch = Branch.decode(Utils.readContents(file));
+        branch.attach(_store);
+        return branch;
+    }
+
+    /** Writes BRANCH, replacing any previous version of it in one
+     *  step. */
+    public void write(Branch branch) {
+        Journal.writeDurably(new File(_refs, branch.name()),
+                             branch.encode());
+    }
+
+    /** Deletes the branch with NAME. */
+    public void delete(String name) {
+        new File(_refs, name).delete();
+    }
+
+    /** Returns the names of all branches in lexicographic order. */
+    public List<String> names() {
+        return Utils.plainFilenamesIn(_refs);
+    }
+
+    /** Directory holding one file per branch. */
+    private File _refs;
+    /** Store holding the commits the branches point to. */
+    private ObjectStore _store;
+}
@@ -0,0 +1,200 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Server of a repository to SocketTransports, started by the serve
+ *  command.  It keeps the repository open, with the object cache of its
+ *  ObjectStore warm, and answers the requests of each connection on its
+ *  own thread, one request of any connection at a time.  Only loopback
+ *  TCP addresses and Unix-domain sockets are served.
+ *  @author Amy Kwon
+ */
+class RemoteServer {
+
+    /** A server of the repository whose objects are in STORE, whose
+     *  branches are in REFS and whose commits are in GRAPH. */
+    RemoteServer(ObjectStore store, Refs refs, CommitGraph graph) {
+        _repo = new LocalTransport(store, refs, graph);
+    }
+
+    /** Serves the repository at the address LOCATION until the process
+     *  is stopped. */
+    void serve(String location) {
+        SocketAddress address = Protocol.address(location);
+        if (address instanceof InetSocketAddress
+            && !((InetSocketAddress) address).getAddress()
+                .isLoopbackAddress()) {
+            throw new IllegalArgumentException(
+                "only loopback addresses may be served");
+        }
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(Protocol.family(address))) {
+            if (address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(
+                    ((UnixDomainSocketAddress) address).getPath());
+                ((UnixDomainSocketAddress) address).getPath().toFile()
+                    .deleteOnExit();
+            }
+            server.bind(address);
+            while (true) {
+                SocketChannel client = server.accept();
+                Thread thread = new Thread(() -> handle(client));
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Answers the requests sent over CLIENT until it disconnects. */
+    private void handle(SocketChannel client) {
+        try (SocketChannel channel = client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel),
+                                         BUFFER_SIZE));
+            String failure = null;
+            while (true) {
+                byte[] frame;
+                try {
+                    frame = Protocol.readFrame(in);
+                } catch (EOFException excp) {
+                    return;
+                }
+                DataInputStream body = new DataInputStream(
+                    new ByteArrayInputStream(frame, 1, frame.length - 1));
+                ByteArrayOutputStream reply = Protocol.body();
+                try {
+                    synchronized (this) {
+                        answer(frame[0], body, new DataOutputStream(reply));
+                    }
+                } catch (IllegalArgumentException | IOException excp) {
+                    if (failure == null) {
+                        failure = String.valueOf(excp.getMessage());
+                    }
+                }
+                if (frame[0] == Protocol.PUT) {
+                    continue;
+                }
+                if (failure != null) {
+                    ByteArrayOutputStream error = Protocol.body();
+                    new DataOutputStream(error).writeUTF(failure);
+                    Protocol.writeFrame(out, Protocol.ERROR,
+                                        error.toByteArray());
+                    failure = null;
+                } else {
+                    Protocol.writeFrame(out, Protocol.OK,
+                                        reply.toByteArray());
+                }
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Carries out the request of TYPE whose body is IN, writing the body
+     *  of its response to OUT. */
+    private void answer(byte type, DataInputStream in, DataOutputStream out)
+        throws IOException {
+        switch (type) {
+        case Protocol.REFS:
+            Map<String, String> refs = _repo.refs();
+            out.writeInt(refs.size());
+            for (Map.Entry<String, String> ref : refs.entrySet()) {
+                out.writeUTF(ref.getKey());
+                Protocol.writeHash(out, ref.getValue());
+            }
+            break;
+        case Protocol.LACKING:
+            ByteArrayOutputStream lacking = Protocol.body();
+            DataOutputStream hashes = new DataOutputStream(lacking);
+            int count = 0;
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String hash = Protocol.readHash(in);
+                if (!_repo.has(hash)) {
+                    Protocol.writeHash(hashes, hash);
+                    count += 1;
+                }
+            }
+            out.writeInt(count);
+            lacking.writeTo(out);
+            break;
+        case Protocol.GET:
+            int n = in.readInt();
+            out.writeInt(n);
+            for (; n > 0; n -= 1) {
+                String hash = Protocol.readHash(in);
+                byte[] contents = _repo.read(hash);
+                Protocol.writeHash(out, hash);
+                out.writeInt(contents.length);
+                out.write(contents);
+            }
+            break;
+        case Protocol.PUT:
+            ArrayList<String> puts = new ArrayList<String>();
+            ArrayList<String> names = new ArrayList<String>();
+            ArrayList<byte[]> objects = new ArrayList<byte[]>();
+            for (int k = in.readInt(); k > 0; k -= 1) {
+                puts.add(Protocol.readHash(in));
+                names.add(in.readUTF());
+                objects.add(Protocol.readBytes(in));
+            }
+            _repo.write(puts, names, objects);
+            break;
+        case Protocol.UPDATE:
+            String name = in.readUTF();
+            if (name.isEmpty() || name.startsWith(".")
+                || name.contains("/") || name.contains("\\")) {
+                throw new IllegalArgumentException("bad branch " + name);
+            }
+            String head = Protocol.readHash(in);
+            _repo.update(name, in.readBoolean() ? Protocol.readHash(in)
+                         : null, head);
+            break;
+        case Protocol.MISSING:
+            String want = Protocol.readHash(in);
+            ArrayList<String> haves = new ArrayList<String>();
+            for (int k = in.readInt(); k > 0; k -= 1) {
+                haves.add(Protocol.readHash(in));
+            }
+            List<String> missing = _repo.missing(want, haves);
+            out.writeInt(missing.size());
+            for (String hash : missing) {
+                Protocol.writeHash(out, hash);
+            }
+            break;
+        case Protocol.SYNC:
+            break;
+        default:
+            throw new IllegalArgumentException("unknown request " + type);
+        }
+    }
+
+    /** Size of the buffers of each connection. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The repository served. */
+    private LocalTransport _repo;
+}
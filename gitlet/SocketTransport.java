@@ -0,0 +1,244 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Transport to a repository served by a RemoteServer, speaking the
+ *  Protocol over one connection.  Hashes and objects are sent and asked
+ *  for in batches of up to BATCH_COUNT a frame, up to WINDOW requests are
+ *  sent before their responses are read, and written objects are
+ *  collected into frames that are sent without waiting for any reply.
+ *  @author Amy Kwon
+ */
+class SocketTransport implements Transport {
+
+    /** A transport to the remote served at LOCATION. */
+    SocketTransport(String location) throws IOException {
+        _channel = Protocol.connect(location);
+        _in = new DataInputStream(new BufferedInputStream(
+            Channels.newInputStream(_channel), BUFFER_SIZE));
+        _out = new DataOutputStream(new BufferedOutputStream(
+            Channels.newOutputStream(_channel), BUFFER_SIZE));
+        _puts = Protocol.body();
+        _putBody = new DataOutputStream(_puts);
+    }
+
+    @Override
+    public Map<String, String> refs() {
+        HashMap<String, String> result = new HashMap<String, String>();
+        try {
+            DataInputStream in = call(Protocol.REFS, new byte[0]);
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String name = in.readUTF();
+                result.put(name, Protocol.readHash(in));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean has(String hash) {
+        return lacking(Collections.singletonList(hash)).isEmpty();
+    }
+
+    @Override
+    public List<String> lacking(List<String> hashes) {
+        ArrayList<String> result = new ArrayList<String>();
+        try {
+            for (DataInputStream in : exchange(Protocol.LACKING, hashes)) {
+                for (int n = in.readInt(); n > 0; n -= 1) {
+                    result.add(Protocol.readHash(in));
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    @Override
+    public byte[] read(String hash) {
+        return read(Collections.singletonList(hash)).get(0);
+    }
+
+    @Override
+    public List<byte[]> read(List<String> hashes) {
+        HashMap<String, byte[]> found = new HashMap<String, byte[]>();
+        try {
+            for (DataInputStream in : exchange(Protocol.GET, hashes)) {
+                for (int n = in.readInt(); n > 0; n -= 1) {
+                    String hash = Protocol.readHash(in);
+                    found.put(hash, Protocol.readBytes(in));
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        ArrayList<byte[]> result = new ArrayList<byte[]>();
+        for (String hash : hashes) {
+            result.add(found.get(hash));
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> missing(String want, Collection<String> haves) {
+        ArrayList<String> result = new ArrayList<String>();
+        ByteArrayOutputStream body = Protocol.body();
+        try {
+            DataOutputStream out = new DataOutputStream(body);
+            Protocol.writeHash(out, want);
+            out.writeInt(haves.size());
+            for (String have : haves) {
+                Protocol.writeHash(out, have);
+            }
+            DataInputStream in = call(Protocol.MISSING, body.toByteArray());
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                result.add(Protocol.readHash(in));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result;
+    }
+
+    @Override
+    public void write(String hash, String name, byte[] contents) {
+        try {
+            Protocol.writeHash(_putBody, hash);
+            _putBody.writeUTF(name);
+            _putBody.writeInt(contents.length);
+            _putBody.write(contents);
+            _putCount += 1;
+            if (_putCount >= Protocol.BATCH_COUNT
+                || _puts.size() >= Protocol.BATCH_BYTES) {
+                sendPuts();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    @Override
+    public void update(String name, String old, String hash) {
+        ByteArrayOutputStream body = Protocol.body();
+        try {
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeUTF(name);
+            Protocol.writeHash(out, hash);
+            out.writeBoolean(old != null);
+            if (old != null) {
+                Protocol.writeHash(out, old);
+            }
+            call(Protocol.UPDATE, body.toByteArray());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Reports any failure of the objects written, and closes the
+     *  connection whatever happens. */
+    @Override
+    public void close() {
+        try (SocketChannel channel = _channel) {
+            call(Protocol.SYNC, new byte[0]);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Sends a request of TYPE with BODY and returns the body of its
+     *  response. */
+    private DataInputStream call(byte type, byte[] body) throws IOException {
+        sendPuts();
+        Protocol.writeFrame(_out, type, body);
+        _out.flush();
+        return response();
+    }
+
+    /** Sends requests of TYPE for HASHES, a batch per request and up to
+     *  WINDOW requests ahead of their responses, and returns the bodies
+     *  of the responses in order. */
+    private List<DataInputStream> exchange(byte type, List<String> hashes)
+        throws IOException {
+        sendPuts();
+        ArrayList<DataInputStream> result = new ArrayList<DataInputStream>();
+        int sent = 0, count = (hashes.size() + Protocol.BATCH_COUNT - 1)
+            / Protocol.BATCH_COUNT;
+        while (result.size() < count) {
+            while (sent < count && sent - result.size() < Protocol.WINDOW) {
+                List<String> batch = hashes.subList(
+                    sent * Protocol.BATCH_COUNT,
+                    Math.min(hashes.size(),
+                             (sent + 1) * Protocol.BATCH_COUNT));
+                ByteArrayOutputStream body = Protocol.body();
+                DataOutputStream out = new DataOutputStream(body);
+                out.writeInt(batch.size());
+                for (String hash : batch) {
+                    Protocol.writeHash(out, hash);
+                }
+                Protocol.writeFrame(_out, type, body.toByteArray());
+                sent += 1;
+            }
+            _out.flush();
+            result.add(response());
+        }
+        return result;
+    }
+
+    /** Reads a response and returns its body, throwing the error it
+     *  reports if it is one. */
+    private DataInputStream response() throws IOException {
+        byte[] frame = Protocol.readFrame(_in);
+        DataInputStream in = new DataInputStream(
+            new ByteArrayInputStream(frame, 1, frame.length - 1));
+        if (frame[0] == Protocol.ERROR) {
+            throw new IllegalArgumentException(in.readUTF());
+        }
+        return in;
+    }
+
+    /** Sends the objects written since the last frame of them, if any. */
+    private void sendPuts() throws IOException {
+        if (_putCount == 0) {
+            return;
+        }
+        ByteArrayOutputStream body = Protocol.body();
+        new DataOutputStream(body).writeInt(_putCount);
+        _puts.writeTo(body);
+        Protocol.writeFrame(_out, Protocol.PUT, body.toByteArray());
+        _puts.reset();
+        _putCount = 0;
+    }
+
+    /** Size of the buffers of the connection. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Connection to the server. */
+    private SocketChannel _channel;
+    /** Input of the connection. */
+    private DataInputStream _in;
+    /** Output of the connection. */
+    private DataOutputStream _out;
+    /** Objects written and not sent yet. */
+    private ByteArrayOutputStream _puts;
+    /** Writer of _puts. */
+    private DataOutputStream _putBody;
+    /** Number of objects in _puts. */
+    private int _putCount;
+}
@@ -13,6 +13,18 @@ public class Stage implements Serializable {
         _addition = new HashMap<String, Blob>();
         _removal = new HashMap<String, Blob>();
     }
+    /** A stage read from the record IN. */
+    Stage(Codec.Reader in) {
+        _addition = in.readBlobs();
+        _removal = in.readBlobs();
+    }
+
+    /** Writes the stage to the record OUT. */
+    void encode(Codec.Writer out) {
+        out.writeBlobs(_addition);
+        out.writeBlobs(_removal);
+    }
+
     /** Puts the FILENAME and CHANGE to the corresponding Arraylist. */
     public void add(String fileName, Blob change) {
         _addition.put(fileName, change);
@@ -56,4 +68,6 @@ public class Stage implements Serializable {
     private HashMap<String, Blob> _addition;
     /** Removed list. */
     private HashMap<String, Blob> _removal;
+    /** Version of the serialized form of stages saved before Codec. */
+    private static final long serialVersionUID = 4923386563734607236L;
 }
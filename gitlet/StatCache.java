@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Persistent cache of the blob hashes of working files, kept in
+ *  .gitlet/index.  Each entry records the size, modification time and
+ *  file key (inode) the file had when it was hashed, so that a file whose
+ *  stat data is unchanged is not read again.  An entry saved while its
+ *  file was modified too recently for its stat data to tell a later
+ *  change apart is kept but marked racy, as git does with racily clean
+ *  entries, and its file is hashed again before the entry is trusted.
+ *  Files may be hashed from several threads at once.
+ *  @author Amy Kwon
+ */
+public class StatCache {
+
+    /** Returns the stat cache stored in FILE, or an empty one if FILE
+     *  does not exist or cannot be read. */
+    static StatCache load(File file) {
+        StatCache cache = null;
+        if (file.exists()) {
+            try {
+                cache = new StatCache(new Codec.Reader(
+                    Utils.readContents(file), Codec.STAT_CACHE));
+            } catch (IllegalArgumentException excp) {
+                cache = null;
+            }
+        }
+        if (cache == null) {
+            cache = new StatCache();
+        }
+        return cache;
+    }
+
+    /** An empty stat cache. */
+    StatCache() {
+        _entries = new ConcurrentHashMap<String, Entry>();
+    }
+
+    /** A stat cache read from the record IN. */
+    private StatCache(Codec.Reader in) {
+        this();
+        for (int n = in.readInt(); n > 0; n -= 1) {
+            String name = in.readString();
+            _entries.put(name, new Entry(in));
+        }
+    }
+
+    /** Returns the blob hash of the working file FILE, hashing it only if
+     *  its stat data changed since it was last hashed, its entry is racy,
+     *  or it was modified too recently for its stat data to tell a later
+     *  change apart. */
+    public String hash(File file) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file.toPath(),
+                                         BasicFileAttributes.class);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Trace.count(Trace.STATS, 1);
+        Entry stat = new Entry(attrs, null);
+        Entry entry = _entries.get(file.getName());
+        if (entry != null && !entry._racy && entry.sameStat(stat)
+            && stat._mtime < System.currentTimeMillis() - RACY_WINDOW) {
+            return entry._hash;
+        }
+        stat._hash = Utils.sha1(file, file.getName());
+        _entries.put(file.getName(), stat);
+        _dirty = true;
+        return stat._hash;
+    }
+
+    /** Records that the working file FILE, as it is now, has blob hash
+     *  HASH, so that it is not hashed again until it changes. */
+    public void record(File file, String hash) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file.toPath(),
+                                         BasicFileAttributes.class);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Trace.count(Trace.STATS, 1);
+        _entries.put(file.getName(), new Entry(attrs, hash));
+        _dirty = true;
+    }
+
+    /** Returns true if the cache holds an entry for the working file
+     *  FILE, racy or not. */
+    boolean contains(File file) {
+        return _entries.containsKey(file.getName());
+    }
+
+    /** Writes this cache to FILE if it changed.  Entries of files modified
+     *  too recently to be told apart from a later change with the same
+     *  stat data are kept but marked racy, so that those files are hashed
+     *  again before their entries are trusted. */
+    void save(File file) {
+        if (!_dirty) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Entry entry : _entries.values()) {
+            if (entry._mtime >= now - RACY_WINDOW) {
+                entry._racy = true;
+            }
+        }
+        Codec.Writer out = new Codec.Writer(Codec.STAT_CACHE);
+        out.writeVarint(_entries.size());
+        for (Map.Entry<String, Entry> entry : _entries.entrySet()) {
+            out.writeString(entry.getKey());
+            entry.getValue().encode(out);
+        }
+        Utils.writeContents(file, out.toByteArray());
+        _dirty = false;
+    }
+
+    /** Stat data and hash of one working file. */
+    private static class Entry {
+
+        /** An entry with the stat data in ATTRS and HASH. */
+        Entry(BasicFileAttributes attrs, String hash) {
+            _size = attrs.size();
+            _mtime = attrs.lastModifiedTime().toMillis();
+            Object key = attrs.fileKey();
+            _key = key == null ? null : key.toString();
+            _hash = hash;
+        }
+
+        /** An entry read from the record IN. */
+        Entry(Codec.Reader in) {
+            _size = in.readVarint();
+            _mtime = in.readVarint();
+            _key = in.readString();
+            _hash = in.readHash();
+            _racy = in.readBoolean();
+        }
+
+        /** Writes this entry to OUT. */
+        void encode(Codec.Writer out) {
+            out.writeVarint(_size);
+            out.writeVarint(_mtime);
+            out.writeString(_key);
+            out.writeHash(_hash);
+            out.writeBoolean(_racy);
+        }
+
+        /** Returns true if OTHER has the same stat data as this entry. */
+        boolean sameStat(Entry other) {
+            return _size == other._size && _mtime == other._mtime
+                && (_key == null ? other._key == null
+                    : _key.equals(other._key));
+        }
+
+        /** Size of the file. */
+        private long _size;
+        /** Modification time of the file in milliseconds. */
+        private long _mtime;
+        /** File key (device and inode) of the file, if any. */
+        private String _key;
+        /** Blob hash of the file. */
+        private String _hash;
+        /** Whether the file was modified too recently, when the entry was
+         *  saved, for the entry to be trusted without hashing it again. */
+        private boolean _racy;
+    }
+
+    /** Milliseconds after a modification during which a file is not
+     *  trusted to be unchanged when its stat data is. */
+    private static final long RACY_WINDOW = 2000;
+
+    /** Entries of the working files by name. */
+    private ConcurrentHashMap<String, Entry> _entries;
+    /** Whether the cache changed since it was loaded. */
+    private volatile boolean _dirty;
+}
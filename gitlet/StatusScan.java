@@ -0,0 +1,117 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** Classifies the files of the working directory for status on a
+ *  fork/join pool.  Each file gets its own result lists, which collect
+ *  merges in the order of the file names, so the output is the same as
+ *  that of a sequential scan.
+ *  @author Amy Kwon
+ */
+class StatusScan extends RecursiveAction {
+
+    /** A scan of the files NAMES for COMMAND, using TRACKEDFILES, CURRHEAD,
+     *  PREVHEAD and PREVROOT as Command.setUpHelper does. */
+    StatusScan(Command command, List<String> names,
+               HashMap<String, Blob> trackedFiles,
+               Commit currHead, Commit prevHead, boolean prevRoot) {
+        this(command, names, trackedFiles, currHead, prevHead, prevRoot,
+             new ArrayList<List<String>>(), new ArrayList<List<String>>(),
+             0, names.size());
+        for (int i = 0; i < names.size(); i += 1) {
+            _modified.add(new ArrayList<String>());
+            _untracked.add(new ArrayList<String>());
+        }
+    }
+
+    /** The part of a scan that classifies NAMES[FROM .. TO) into
+     *  MODIFIED and UNTRACKED, with COMMAND, TRACKEDFILES, CURRHEAD,
+     *  PREVHEAD and PREVROOT as for the whole scan. */
+    private StatusScan(Command command, List<String> names,
+                       HashMap<String, Blob> trackedFiles,
+                       Commit currHead, Commit prevHead, boolean prevRoot,
+                       List<List<String>> modified,
+                       List<List<String>> untracked, int from, int to) {
+        _command = command;
+        _names = names;
+        _trackedFiles = trackedFiles;
+        _currHead = currHead;
+        _prevHead = prevHead;
+        _prevRoot = prevRoot;
+        _modified = modified;
+        _untracked = untracked;
+        _from = from;
+        _to = to;
+    }
+
+    /** Classifies every file, using up to PARALLELISM threads. */
+    void run(int parallelism) {
+        if (parallelism <= 1 || _to - _from <= THRESHOLD) {
+            compute();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(this);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /** Adds the modified and untracked files found by the scan to MODIFIED
+     *  and UNTRACKED, in the order of the file names. */
+    void collect(List<String> modified, List<String> untracked) {
+        for (int i = _from; i < _to; i += 1) {
+            modified.addAll(_modified.get(i));
+            untracked.addAll(_untracked.get(i));
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if (_to - _from <= THRESHOLD) {
+            for (int i = _from; i < _to; i += 1) {
+                _command.setUpHelper(_names.get(i), _trackedFiles,
+                        _currHead, _prevHead, _prevRoot,
+                        _modified.get(i), _untracked.get(i));
+            }
+        } else {
+            int mid = (_from + _to) >>> 1;
+            invokeAll(part(_from, mid), part(mid, _to));
+        }
+    }
+
+    /** Returns the part of this scan covering the files [FROM .. TO). */
+    private StatusScan part(int from, int to) {
+        return new StatusScan(_command, _names, _trackedFiles, _currHead,
+                _prevHead, _prevRoot, _modified, _untracked, from, to);
+    }
+
+    /** Number of files below which a part is not split further. */
+    private static final int THRESHOLD = 64;
+
+    /** Command whose working directory is scanned. */
+    private final Command _command;
+    /** Names of all files of the working directory. */
+    private final List<String> _names;
+    /** Files tracked by the current head. */
+    private final HashMap<String, Blob> _trackedFiles;
+    /** Current head commit. */
+    private final Commit _currHead;
+    /** Parent of the current head commit. */
+    private final Commit _prevHead;
+    /** True if the parent of the current head is the initial commit. */
+    private final boolean _prevRoot;
+    /** Modified files found for each file name. */
+    private final List<List<String>> _modified;
+    /** Untracked files found for each file name. */
+    private final List<List<String>> _untracked;
+    /** Index of the first file of this part. */
+    private final int _from;
+    /** Index just past the last file of this part. */
+    private final int _to;
+}
@@ -0,0 +1,193 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Timers and counters of where a command spends its time, reported on
+ *  standard error when the command ends if tracing is on.  Tracing is
+ *  turned on by --trace before the command, which asks for a summary, or
+ *  --trace=json, which asks for one line of JSON, or by the GITLET_TRACE
+ *  environment variable set to summary or json.  The report is appended
+ *  to the file named by GITLET_TRACE_FILE instead, if that is set, so
+ *  that the lines of many commands collect in one place.  A traced
+ *  command is never forwarded to a daemon, so its report is of the
+ *  command run on its own.
+ *
+ *  The time of a phase is summed over the threads that run it, and
+ *  phases nest: hashing done while scanning the working files also counts
+ *  as scanning.  When tracing is off, each timer and counter costs a
+ *  test of one flag.
+ *  @author Amy Kwon
+ */
+class Trace {
+
+    /** Phase of reading the state of the repository. */
+    static final int LOAD = 0;
+    /** Phase of comparing the working files with the head commit. */
+    static final int SCAN = 1;
+    /** Phase of computing SHA-1 hashes. */
+    static final int HASH = 2;
+    /** Phase of reading objects from the store. */
+    static final int READ = 3;
+    /** Phase of writing objects to the store. */
+    static final int WRITE = 4;
+    /** Phase of saving the state of the repository. */
+    static final int SAVE = 5;
+
+    /** Counter of working files whose stat data was read. */
+    static final int STATS = 0;
+    /** Counter of SHA-1 hashes computed. */
+    static final int SHA1 = 1;
+    /** Counter of bytes hashed. */
+    static final int HASHED = 2;
+    /** Counter of objects read from the store. */
+    static final int LOADED = 3;
+    /** Counter of objects written to the store. */
+    static final int STORED = 4;
+
+    /** Turns tracing on as asked by the environment or by a --trace
+     *  option at the start of ARGS, and returns ARGS without it. */
+    static String[] configure(String... args) {
+        String format = System.getenv("GITLET_TRACE");
+        if (args.length > 0 && (args[0].equals("--trace")
+                                || args[0].startsWith("--trace="))) {
+            format = args[0].equals("--trace") ? "summary"
+                : args[0].substring("--trace=".length());
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (format != null && !format.isEmpty() && !format.equals("0")
+            && !format.equals("off")) {
+            _enabled = true;
+            _json = format.equals("json");
+        }
+        return args;
+    }
+
+    /** Returns true if tracing is on. */
+    static boolean enabled() {
+        return _enabled;
+    }
+
+    /** Returns the start of a phase, to pass to stop. */
+    static long start() {
+        return _enabled ? System.nanoTime() : 0;
+    }
+
+    /** Adds the time since START to PHASE. */
+    static void stop(int phase, long start) {
+        if (_enabled) {
+            _times.addAndGet(phase, System.nanoTime() - start);
+        }
+    }
+
+    /** Adds N to COUNTER. */
+    static void count(int counter, long n) {
+        if (_enabled) {
+            _counts.addAndGet(counter, n);
+        }
+    }
+
+    /** Reports the timers and counters of the command ARGS, which started
+     *  at START, if tracing is on. */
+    static void report(String[] args, long start) {
+        if (!_enabled) {
+            return;
+        }
+        long total = System.nanoTime() - start;
+        String command = args.length == 0 ? "" : args[0];
+        StringBuilder out = new StringBuilder();
+        if (_json) {
+            out.append("{\"time\":").append(System.currentTimeMillis())
+                .append(",\"command\":");
+            quote(out, command);
+            out.append(",\"total_ms\":").append(millis(total));
+            for (int i = 0; i < PHASES.length; i += 1) {
+                out.append(",\"").append(PHASES[i]).append("_ms\":")
+                    .append(millis(_times.get(i)));
+            }
+            for (int i = 0; i < COUNTERS.length; i += 1) {
+                out.append(",\"").append(COUNTERS[i]).append("\":")
+                    .append(_counts.get(i));
+            }
+            out.append("}\n");
+        } else {
+            out.append(String.format("trace: %s%n", command));
+            out.append(String.format("  %-16s%12s ms%n", "total",
+                                     millis(total)));
+            for (int i = 0; i < PHASES.length; i += 1) {
+                out.append(String.format("  %-16s%12s ms%n", PHASES[i],
+                                         millis(_times.get(i))));
+            }
+            for (int i = 0; i < COUNTERS.length; i += 1) {
+                out.append(String.format("  %-16s%12d%n", LABELS[i],
+                                         _counts.get(i)));
+            }
+        }
+        String file = System.getenv("GITLET_TRACE_FILE");
+        if (file == null || file.isEmpty()) {
+            System.err.print(out);
+            System.err.flush();
+            return;
+        }
+        try {
+            Files.write(Paths.get(file),
+                        out.toString().getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            System.err.println("cannot write trace: " + excp.getMessage());
+        }
+    }
+
+    /** Returns NANOS as milliseconds with three decimals. */
+    private static String millis(long nanos) {
+        return String.format("%d.%03d", nanos / 1000000,
+                             nanos / 1000 % 1000);
+    }
+
+    /** Appends TEXT to OUT as a JSON string. */
+    private static void quote(StringBuilder out, String text) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /** Names of the phases. */
+    private static final String[] PHASES = {
+        "load", "scan", "hash", "read", "write", "save"
+    };
+    /** Names of the counters in JSON. */
+    private static final String[] COUNTERS = {
+        "stats", "sha1", "hashed_bytes", "objects_read", "objects_written"
+    };
+    /** Names of the counters in a summary. */
+    private static final String[] LABELS = {
+        "files stat'd", "sha1 calls", "bytes hashed", "objects read",
+        "objects written"
+    };
+
+    /** True if tracing is on. */
+    private static boolean _enabled;
+    /** True if the report is a line of JSON rather than a summary. */
+    private static boolean _json;
+    /** Nanoseconds spent in each phase. */
+    private static final AtomicLongArray _times =
+        new AtomicLongArray(PHASES.length);
+    /** Value of each counter. */
+    private static final AtomicLongArray _counts =
+        new AtomicLongArray(COUNTERS.length);
+}
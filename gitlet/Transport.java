@@ -0,0 +1,90 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/** A repository that push and fetch exchange objects and branches with.
+ *  The commits, trees and blobs of a repository are closed under
+ *  reference: an object is only written after every object it refers to,
+ *  so a repository that has a commit has all of its history, and a sync
+ *  stops at the first commit the receiving side already has.
+ *  @author Amy Kwon
+ */
+interface Transport extends AutoCloseable {
+
+    /** Returns the hash of the head commit of every branch by name. */
+    Map<String, String> refs();
+
+    /** Returns true if the object with HASH is in the repository. */
+    boolean has(String hash);
+
+    /** Returns the hashes of HASHES whose objects are not in the
+     *  repository, in the order of HASHES. */
+    default List<String> lacking(List<String> hashes) {
+        ArrayList<String> result = new ArrayList<String>();
+        for (String hash : hashes) {
+            if (!has(hash)) {
+                result.add(hash);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the contents of the object with HASH, which must be in
+     *  the repository. */
+    byte[] read(String hash);
+
+    /** Returns the contents of the objects with HASHES, in order, all of
+     *  which must be in the repository. */
+    default List<byte[]> read(List<String> hashes) {
+        ArrayList<byte[]> result = new ArrayList<byte[]>();
+        for (String hash : hashes) {
+            result.add(read(hash));
+        }
+        return result;
+    }
+
+    /** Returns the hashes of the commits that are the commit with WANT,
+     *  which must be in the repository, or its ancestors, but neither
+     *  any of the commits with hashes in HAVES nor their ancestors,
+     *  oldest first.  Hashes of HAVES that are not in the repository are
+     *  ignored. */
+    List<String> missing(String want, Collection<String> haves);
+
+    /** Stores CONTENTS as the object with HASH, unless it is already
+     *  stored.  NAME is the name of the file of a blob, by which its hash
+     *  is checked, and is empty for a tree node or a commit.  Objects
+     *  whose contents do not match their hash are refused. */
+    void write(String hash, String name, byte[] contents);
+
+    /** Points the branch NAME at the commit with HASH, which must be in
+     *  the repository, if the branch still points at the commit with
+     *  hash OLD, or does not exist if OLD is null, and HASH descends from
+     *  its head.  The check and the change are made together, so of two
+     *  pushes from the same head, the second is refused rather than
+     *  discarding the first. */
+    void update(String name, String old, String hash);
+
+    /** Releases whatever the transport holds. */
+    @Override
+    void close();
+
+    /** Copies the blobs in BLOBS, the names of their files by hash, that
+     *  TO lacks from FROM, a batch at a time. */
+    static void copy(Transport from, Transport to,
+                     Map<String, String> blobs) {
+        List<String> lacking =
+            to.lacking(new ArrayList<String>(blobs.keySet()));
+        for (int i = 0; i < lacking.size(); i += Protocol.BATCH_COUNT) {
+            List<String> batch = lacking.subList(i,
+                Math.min(lacking.size(), i + Protocol.BATCH_COUNT));
+            List<byte[]> contents = from.read(batch);
+            for (int k = 0; k < batch.size(); k += 1) {
+                to.write(batch.get(k), blobs.get(batch.get(k)),
+                         contents.get(k));
+            }
+        }
+    }
+}
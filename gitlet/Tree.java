@@ -0,0 +1,379 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/** A node of the manifest of a commit, mapping file names to blob hashes.
+ *  A leaf holds up to LEAF_SIZE entries; a larger manifest is split into
+ *  up to 16 children by the hexadecimal digit of the SHA-1 hash of each
+ *  file name at the depth of the node.  Nodes are stored in the
+ *  ObjectStore under the hash of their contents, so a commit shares every
+ *  node that did not change with its parent, and finding a file reads one
+ *  node per level.
+ *  @author Amy Kwon
+ */
+public class Tree implements Serializable {
+
+    /** An empty leaf at DEPTH. */
+    private Tree(int depth) {
+        _depth = depth;
+        _entries = new TreeMap<String, String>();
+    }
+
+    /** A node read from the record IN. */
+    private Tree(Codec.Reader in) {
+        _depth = in.readInt();
+        if (in.readBoolean()) {
+            _entries = new TreeMap<String, String>();
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String fileName = in.readString();
+                _entries.put(fileName, in.readHash());
+            }
+        } else {
+            _children = new String[FANOUT];
+            for (int d = 0; d < FANOUT; d += 1) {
+                _children[d] = in.readHash();
+            }
+        }
+    }
+
+    /** Returns the node whose stored form is CONTENTS. */
+    static Tree decode(byte[] contents) {
+        if (Codec.isLegacy(contents)) {
+            return Utils.deserialize(contents, Tree.class);
+        }
+        return new Tree(new Codec.Reader(contents, Codec.TREE));
+    }
+
+    /** Returns the stored form of the node. */
+    private byte[] encode() {
+        Codec.Writer out = new Codec.Writer(Codec.TREE);
+        out.writeVarint(_depth);
+        out.writeBoolean(_children == null);
+        if (_children == null) {
+            out.writeVarint(_entries.size());
+            for (Map.Entry<String, String> entry : _entries.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeHash(entry.getValue());
+            }
+        } else {
+            for (String child : _children) {
+                out.writeHash(child);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Returns the hash of the blob of FILENAME in the manifest whose root
+     *  node has hash ROOT in STORE, or null if there is none. */
+    static String find(ObjectStore store, String root, String fileName) {
+        Tree node = store.readTree(root);
+        String key = key(fileName);
+        while (node._children != null) {
+            String child = node._children[digit(key, node._depth)];
+            if (child == null) {
+                return null;
+            }
+            node = store.readTree(child);
+        }
+        return node._entries.get(fileName);
+    }
+
+    /** Returns all entries of the manifest whose root node has hash ROOT
+     *  in STORE, as file names mapped to blob hashes. */
+    static HashMap<String, String> read(ObjectStore store, String root) {
+        HashMap<String, String> result = new HashMap<String, String>();
+        walk(store, root, null, result::put);
+        return result;
+    }
+
+    /** Calls VISITOR on the file name and blob hash of every entry of the
+     *  manifest whose root node has hash ROOT in STORE.  Nodes whose hash
+     *  is in SEEN are skipped and the others are added to it, unless SEEN
+     *  is null. */
+    static void walk(ObjectStore store, String root, Set<String> seen,
+                     BiConsumer<String, String> visitor) {
+        if (seen != null && !seen.add(root)) {
+            return;
+        }
+        Tree node = store.readTree(root);
+        if (node._children == null) {
+            node._entries.forEach(visitor);
+        } else {
+            for (String child : node._children) {
+                if (child != null) {
+                    walk(store, child, seen, visitor);
+                }
+            }
+        }
+    }
+
+    /** Calls VISITOR with the file name and the blob hashes in the first
+     *  and second manifest of every file whose blob differs between the
+     *  manifests whose root nodes have hashes FIRST and SECOND in STORE,
+     *  either of which may be null for an empty manifest.  A hash is null
+     *  where the file is missing.  Subtrees with the same hash in both
+     *  are skipped without being read. */
+    static void diff(ObjectStore store, String first, String second,
+                     Changes visitor) {
+        if (first != null && first.equals(second)) {
+            return;
+        }
+        Tree one = first == null ? null : store.readTree(first);
+        Tree two = second == null ? null : store.readTree(second);
+        if (one != null && two != null && one._children != null
+            && two._children != null) {
+            for (int d = 0; d < FANOUT; d += 1) {
+                diff(store, one._children[d], two._children[d], visitor);
+            }
+            return;
+        }
+        HashMap<String, String> before = first == null
+            ? new HashMap<String, String>() : read(store, first);
+        HashMap<String, String> after = second == null
+            ? new HashMap<String, String>() : read(store, second);
+        for (Map.Entry<String, String> entry : before.entrySet()) {
+            String other = after.get(entry.getKey());
+            if (!entry.getValue().equals(other)) {
+                visitor.change(entry.getKey(), entry.getValue(), other);
+            }
+        }
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            if (!before.containsKey(entry.getKey())) {
+                visitor.change(entry.getKey(), null, entry.getValue());
+            }
+        }
+    }
+
+    /** Receiver of the files that differ between two manifests. */
+    interface Changes {
+        /** Called for the file FILENAME, whose blob hash is BEFORE in the
+         *  first manifest and AFTER in the second, either being null if
+         *  the file is missing there. */
+        void change(String fileName, String before, String after);
+    }
+
+    /** Copies the nodes and blobs of the manifest whose root node has hash
+     *  ROOT that TO lacks from FROM.  The nodes are fetched a level at a
+     *  time, without walking into any node TO already has, and written
+     *  after their blobs, deepest first, so that TO never holds a node
+     *  without everything below it. */
+    static void copy(Transport from, Transport to, String root) {
+        ArrayList<String> hashes = new ArrayList<String>();
+        ArrayList<byte[]> nodes = new ArrayList<byte[]>();
+        HashMap<String, String> blobs = new HashMap<String, String>();
+        List<String> level = to.lacking(Collections.singletonList(root));
+        while (!level.isEmpty()) {
+            List<byte[]> contents = from.read(level);
+            ArrayList<String> next = new ArrayList<String>();
+            for (int i = 0; i < level.size(); i += 1) {
+                Tree node = decode(contents.get(i));
+                if (node._children == null) {
+                    node._entries.forEach((name, blob) ->
+                                          blobs.put(blob, name));
+                } else {
+                    for (String child : node._children) {
+                        if (child != null) {
+                            next.add(child);
+                        }
+                    }
+                }
+                hashes.add(level.get(i));
+                nodes.add(contents.get(i));
+            }
+            level = next.isEmpty() ? next : to.lacking(next);
+        }
+        Transport.copy(from, to, blobs);
+        for (int i = hashes.size() - 1; i >= 0; i -= 1) {
+            to.write(hashes.get(i), "", nodes.get(i));
+        }
+    }
+
+    /** Returns the hash of the root node of the manifest that results from
+     *  adding the blobs of PUTS to, and removing the files in REMOVES from,
+     *  the manifest whose root node has hash ROOT, which is empty if ROOT
+     *  is null.  Only the nodes that change are written to STORE. */
+    static String update(ObjectStore store, String root,
+                         Map<String, Blob> puts, Set<String> removes) {
+        TreeMap<String, String> changes = new TreeMap<String, String>();
+        for (String fileName : removes) {
+            changes.put(key(fileName) + fileName, null);
+        }
+        for (Map.Entry<String, Blob> entry : puts.entrySet()) {
+            String fileName = entry.getKey();
+            changes.put(key(fileName) + fileName, entry.getValue().hash());
+        }
+        Tree node = root == null ? new Tree(0) : store.readTree(root);
+        if (root != null && changes.isEmpty()) {
+            return root;
+        }
+        return update(store, node, changes).store(store);
+    }
+
+    /** Returns the node that results from applying CHANGES to NODE, storing
+     *  any changed children in STORE.  CHANGES maps the key of each file
+     *  followed by its name to its new blob hash, or to null if it is
+     *  removed.  Children left empty are dropped, and an inner node whose
+     *  entries fit in one leaf is collapsed into it. */
+    private static Tree update(ObjectStore store, Tree node,
+                               TreeMap<String, String> changes) {
+        Tree result = new Tree(node._depth);
+        if (node._children == null) {
+            result._entries.putAll(node._entries);
+            for (Map.Entry<String, String> change : changes.entrySet()) {
+                String fileName =
+                    change.getKey().substring(Utils.UID_LENGTH);
+                if (change.getValue() == null) {
+                    result._entries.remove(fileName);
+                } else {
+                    result._entries.put(fileName, change.getValue());
+                }
+            }
+            if (result._entries.size() <= LEAF_SIZE
+                || node._depth == Utils.UID_LENGTH - 1) {
+                return result;
+            }
+            return result.split(store);
+        }
+        result._entries = null;
+        result._children = node._children.clone();
+        Tree[] changed = new Tree[FANOUT];
+        boolean removed = false;
+        for (int d = 0; d < FANOUT; d += 1) {
+            NavigableMap<String, String> part = changes.subMap(
+                prefix(changes, node._depth, d, false), true,
+                prefix(changes, node._depth, d, true), false);
+            if (part.isEmpty()) {
+                continue;
+            }
+            String child = node._children[d];
+            Tree childNode = child == null
+                ? new Tree(node._depth + 1) : store.readTree(child);
+            childNode =
+                update(store, childNode, new TreeMap<String, String>(part));
+            if (childNode._children == null && childNode._entries.isEmpty()) {
+                result._children[d] = null;
+            } else {
+                changed[d] = childNode;
+            }
+            removed |= part.containsValue(null);
+        }
+        if (removed) {
+            Tree leaf = result.collapse(store, changed);
+            if (leaf != null) {
+                return leaf;
+            }
+        }
+        for (int d = 0; d < FANOUT; d += 1) {
+            if (changed[d] != null) {
+                result._children[d] = changed[d].store(store);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the leaf holding every entry below this inner node, if
+     *  they fit in one, or else null.  CHANGED holds the children that
+     *  changed and are not yet stored, by digit; the others are read from
+     *  STORE.  This keeps a manifest the same tree however it was made,
+     *  as a leaf is split only when it outgrows LEAF_SIZE. */
+    private Tree collapse(ObjectStore store, Tree[] changed) {
+        Tree result = new Tree(_depth);
+        for (int d = 0; d < FANOUT; d += 1) {
+            Tree child = changed[d];
+            if (child == null && _children[d] != null) {
+                child = store.readTree(_children[d]);
+            }
+            if (child == null) {
+                continue;
+            }
+            if (child._children != null) {
+                return null;
+            }
+            result._entries.putAll(child._entries);
+            if (result._entries.size() > LEAF_SIZE) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the inner node holding the entries of this leaf, split
+     *  among children stored in STORE. */
+    private Tree split(ObjectStore store) {
+        Tree result = new Tree(_depth);
+        result._entries = null;
+        result._children = new String[FANOUT];
+        Tree[] children = new Tree[FANOUT];
+        for (Map.Entry<String, String> entry : _entries.entrySet()) {
+            int d = digit(key(entry.getKey()), _depth);
+            if (children[d] == null) {
+                children[d] = new Tree(_depth + 1);
+            }
+            children[d]._entries.put(entry.getKey(), entry.getValue());
+        }
+        for (int d = 0; d < FANOUT; d += 1) {
+            if (children[d] != null) {
+                Tree child = children[d];
+                if (child._entries.size() > LEAF_SIZE
+                    && child._depth < Utils.UID_LENGTH - 1) {
+                    child = child.split(store);
+                }
+                result._children[d] = child.store(store);
+            }
+        }
+        return result;
+    }
+
+    /** Stores this node in STORE and returns its hash. */
+    private String store(ObjectStore store) {
+        byte[] contents = encode();
+        String hash = Utils.sha1("tree", contents);
+        store.putTree(hash, contents, this);
+        return hash;
+    }
+
+    /** Returns the first key of CHANGES whose digit at DEPTH is D, or just
+     *  past it if PAST. */
+    private static String prefix(TreeMap<String, String> changes, int depth,
+                                 int d, boolean past) {
+        String first = changes.firstKey().substring(0, depth);
+        if (past) {
+            return d + 1 == FANOUT ? first + "g"
+                : first + Character.forDigit(d + 1, FANOUT);
+        }
+        return first + Character.forDigit(d, FANOUT);
+    }
+
+    /** Returns the key of FILENAME, which decides its place in a tree. */
+    private static String key(String fileName) {
+        return Utils.sha1(fileName);
+    }
+
+    /** Returns the value of the hexadecimal digit of KEY at DEPTH. */
+    private static int digit(String key, int depth) {
+        return Character.digit(key.charAt(depth), FANOUT);
+    }
+
+    /** Largest number of entries in a leaf. */
+    private static final int LEAF_SIZE = 64;
+    /** Number of children of an inner node. */
+    private static final int FANOUT = 16;
+
+    /** Depth of the node, the root being at depth 0. */
+    private int _depth;
+    /** File names mapped to blob hashes, if this is a leaf. */
+    private TreeMap<String, String> _entries;
+    /** Hashes of the children by digit, if this is an inner node. */
+    private String[] _children;
+    /** Version of the serialized form of nodes stored before Codec. */
+    private static final long serialVersionUID = -1362852918655934475L;
+}
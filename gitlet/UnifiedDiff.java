@@ -0,0 +1,138 @@
+package gitlet;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** Writer of the differences between versions of files in the unified
+ *  format, one file after another, through a buffer.  The changes of each
+ *  file are found with Diff and written as soon as they are found, with
+ *  CONTEXT unchanged lines around each group of them.
+ *  @author Amy Kwon
+ */
+class UnifiedDiff {
+
+    /** A writer to standard output. */
+    UnifiedDiff() {
+        this(new OutputStreamWriter(Main.stdout(),
+                                    StandardCharsets.UTF_8));
+    }
+
+    /** A writer to OUT. */
+    UnifiedDiff(Writer out) {
+        _out = new BufferedWriter(out, BUFFER_SIZE);
+    }
+
+    /** Writes the differences of the file NAME from BEFORE to AFTER, its
+     *  contents in each version, either being null if the file is missing
+     *  in that version. */
+    void file(String name, String before, String after) {
+        List<String> a = Diff.lines(before == null ? "" : before);
+        List<String> b = Diff.lines(after == null ? "" : after);
+        List<Diff.Hunk> hunks = Diff.diff(a, b);
+        if (hunks.isEmpty() && before != null && after != null) {
+            return;
+        }
+        line("diff --git a/" + name + " b/" + name);
+        line("--- " + (before == null ? "/dev/null" : "a/" + name));
+        line("+++ " + (after == null ? "/dev/null" : "b/" + name));
+        for (int i = 0; i < hunks.size();) {
+            int j = i + 1;
+            while (j < hunks.size() && hunks.get(j).aStart()
+                   - hunks.get(j - 1).aEnd() <= 2 * CONTEXT) {
+                j += 1;
+            }
+            group(a, b, hunks.subList(i, j));
+            i = j;
+        }
+    }
+
+    /** Returns true if more output is wanted. */
+    boolean wanted() {
+        return !_closed;
+    }
+
+    /** Writes out any buffered output. */
+    void flush() {
+        if (_closed) {
+            return;
+        }
+        try {
+            _out.flush();
+        } catch (IOException excp) {
+            _closed = true;
+        }
+    }
+
+    /** Writes the hunks HUNKS, which are close enough to share their
+     *  context, of the change of the lines A into the lines B. */
+    private void group(List<String> a, List<String> b,
+                       List<Diff.Hunk> hunks) {
+        Diff.Hunk first = hunks.get(0), last = hunks.get(hunks.size() - 1);
+        int lead = Math.min(CONTEXT, first.aStart());
+        int trail = Math.min(CONTEXT, a.size() - last.aEnd());
+        int aStart = first.aStart() - lead, aEnd = last.aEnd() + trail;
+        int bStart = first.bStart() - lead, bEnd = last.bEnd() + trail;
+        line("@@ -" + range(aStart, aEnd - aStart) + " +"
+             + range(bStart, bEnd - bStart) + " @@");
+        int pos = aStart;
+        for (Diff.Hunk hunk : hunks) {
+            lines(" ", a, pos, hunk.aStart());
+            lines("-", a, hunk.aStart(), hunk.aEnd());
+            lines("+", b, hunk.bStart(), hunk.bEnd());
+            pos = hunk.aEnd();
+        }
+        lines(" ", a, pos, aEnd);
+    }
+
+    /** Returns the range of COUNT lines starting at line START, counting
+     *  from 0, as written in a hunk header. */
+    private static String range(int start, int count) {
+        if (count == 0) {
+            return start + ",0";
+        }
+        return count == 1 ? Integer.toString(start + 1)
+            : (start + 1) + "," + count;
+    }
+
+    /** Writes LINES[FROM, TO), each after PREFIX. */
+    private void lines(String prefix, List<String> lines, int from, int to) {
+        for (int i = from; i < to; i += 1) {
+            String text = lines.get(i);
+            if (text.endsWith("\n")) {
+                line(prefix + text.substring(0, text.length() - 1));
+            } else {
+                line(prefix + text);
+                line("\\ No newline at end of file");
+            }
+        }
+    }
+
+    /** Writes TEXT as a line, unless the reader went away. */
+    private void line(String text) {
+        if (_closed) {
+            return;
+        }
+        try {
+            _out.write(text);
+            _out.write(NEWLINE);
+        } catch (IOException excp) {
+            _closed = true;
+        }
+    }
+
+    /** Number of unchanged lines shown around changes. */
+    private static final int CONTEXT = 3;
+    /** Size of the output buffer in characters. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Line separator of the output. */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /** Where the differences are written. */
+    private Writer _out;
+    /** Whether writing failed, which means the reader went away. */
+    private boolean _closed;
+}
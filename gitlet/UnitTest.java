@@ -1,5 +1,16 @@
 package gitlet;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.stream.Stream;
 import ucb.junit.textui;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -23,5 +34,207 @@ public class UnitTest {
         System.out.println(example2.getTimestamp());
     }
 
-}
+    @Test
+    public void lineMergeTest() {
+        LineMerge clean = new LineMerge("a\nb\nc\nd\n",
+                "A\nb\nc\nd\n", "a\nb\nc\nD\n");
+        assertFalse(clean.conflicted());
+        assertEquals("A\nb\nc\nD\n", clean.result());
+        LineMerge conflict = new LineMerge("a\nb\nc\n",
+                "a\nB\nc\n", "a\nx\nc\n");
+        assertTrue(conflict.conflicted());
+        assertEquals("a\n<<<<<<< HEAD\nB\n=======\nx\n>>>>>>>\nc\n",
+                conflict.result());
+    }
+
+    @Test
+    public void codecTest() {
+        Commit parent = new Commit("start", null, null);
+        HashMap<String, Blob> blobs = new HashMap<String, Blob>();
+        blobs.put("f.txt", new Blob(Utils.sha1("f")));
+        blobs.put("gone.txt", null);
+        Commit commit = new Commit("add", parent, blobs);
+        Commit copy = Commit.decode(commit.encode());
+        assertEquals(commit.getHash(), copy.getHash());
+        assertEquals("add", copy.getMessage());
+        assertEquals(parent.getHash(), copy.getParentHash());
+        assertEquals(Utils.sha1("f"), copy.findBlob("f.txt").hash());
+        assertTrue(copy.getBlobs().containsKey("gone.txt"));
+        assertNull(copy.findBlob("gone.txt"));
+        Commit legacy = Commit.decode(Utils.serialize(commit));
+        assertEquals(commit.getHash(), legacy.getHash());
+    }
+
+    @Test
+    public void generatorTest() throws IOException {
+        String home = System.getProperty("user.dir");
+        String[] heads = new String[2];
+        for (int i = 0; i < heads.length; i += 1) {
+            File dir = Files.createTempDirectory("gitlet-test").toFile();
+            System.setProperty("user.dir", dir.getPath());
+            try {
+                Command command = new Generator("generate", "--commits",
+                                                "50", "--files", "20").run();
+                Commit head = command.findBranch("master").head();
+                heads[i] = head.getHash();
+                assertTrue(command.branchNames().size() > 1);
+                assertEquals(head.getManifest().size(),
+                             Utils.plainFilenamesIn(dir).size());
+            } finally {
+                System.setProperty("user.dir", home);
+                delete(dir);
+            }
+        }
+        assertEquals(heads[0], heads[1]);
+    }
+
+    @Test
+    public void packTest() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-test").toFile();
+        try {
+            ObjectStore store = new ObjectStore(dir);
+            store.init();
+            HashMap<String, byte[]> objects = new HashMap<String, byte[]>();
+            ArrayList<String> history = new ArrayList<String>();
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 30; i += 1) {
+                text.append("line ").append(i).append('\n');
+                byte[] version = text.toString().getBytes();
+                String hash = Utils.sha1(version);
+                store.put(hash, version);
+                objects.put(hash, version);
+                history.add(0, hash);
+            }
+            for (int i = 0; i < 20; i += 1) {
+                byte[] other = ("other " + i).getBytes();
+                store.put(Utils.sha1(other), other);
+                objects.put(Utils.sha1(other), other);
+            }
+            ArrayList<ArrayList<String>> histories =
+                new ArrayList<ArrayList<String>>();
+            histories.add(history);
+            store.repack(histories);
+            for (Map.Entry<String, byte[]> entry : objects.entrySet()) {
+                assertFalse(store.file(entry.getKey()).exists());
+                assertTrue(Arrays.equals(entry.getValue(),
+                                         store.read(entry.getKey())));
+            }
+            store.repack(histories);
+            for (Map.Entry<String, byte[]> entry : objects.entrySet()) {
+                assertTrue(Arrays.equals(entry.getValue(),
+                                         store.read(entry.getKey())));
+            }
+            File[] packs = new File(dir, "objects/pack").listFiles();
+            assertEquals(2, packs.length);
+        } finally {
+            delete(dir);
+        }
+    }
 
+    @Test
+    public void statCacheTest() throws IOException {
+        String home = System.getProperty("user.dir");
+        File dir = Files.createTempDirectory("gitlet-test").toFile();
+        System.setProperty("user.dir", dir.getPath());
+        try {
+            File file = new File(dir, "a.txt");
+            Command command = Main.execute(null, "init");
+            Utils.writeContents(file, "a\n");
+            command = Main.execute(command, "add", "a.txt");
+            command = Main.execute(command, "commit", "add a");
+            command = Main.execute(command, "branch", "other");
+            Utils.writeContents(file, "changed\n");
+            command = Main.execute(command, "add", "a.txt");
+            command = Main.execute(command, "commit", "change a");
+            command = Main.execute(command, "checkout", "other");
+            command.save();
+            assertEquals("a\n", Utils.readContentsAsString(file));
+            StatCache cache =
+                StatCache.load(Utils.join(dir, ".gitlet", "index"));
+            assertTrue(cache.contains(file));
+            assertEquals(Utils.sha1(file, file.getName()), cache.hash(file));
+        } finally {
+            System.setProperty("user.dir", home);
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void messageIndexTest() throws IOException {
+        String home = System.getProperty("user.dir");
+        File dir = Files.createTempDirectory("gitlet-test").toFile();
+        System.setProperty("user.dir", dir.getPath());
+        try {
+            File file = new File(dir, "a.txt");
+            Command command = Main.execute(null, "init");
+            String[] messages = { "Fix parser", "fix lexer", "add tests" };
+            for (String message : messages) {
+                Utils.writeContents(file, message);
+                command = Main.execute(command, "add", "a.txt");
+                command = Main.execute(command, "commit", message);
+            }
+            command.messageIndex();
+            command.save();
+            MessageIndex index = new MessageIndex(new File(dir, ".gitlet"));
+            assertEquals(4, index.size());
+            assertEquals(2, index.words("FIX").size());
+            assertEquals(1, index.words("fix lexer").size());
+            assertEquals(0, index.words("fix tests").size());
+            assertEquals(1, index.exact("add tests").size());
+            assertEquals(0, index.exact("add").size());
+            assertEquals(2, index.containing("ix").size());
+            Utils.writeContents(file, "again");
+            command = Main.execute(command, "add", "a.txt");
+            command = Main.execute(command, "commit", "fix again");
+            assertEquals(3, command.messageIndex().words("fix").size());
+            assertEquals(5, command.messageIndex().size());
+        } finally {
+            System.setProperty("user.dir", home);
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void treeCollapseTest() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-test").toFile();
+        try {
+            ObjectStore store = new ObjectStore(dir);
+            store.init();
+            HashMap<String, Blob> all = new HashMap<String, Blob>();
+            HashMap<String, Blob> kept = new HashMap<String, Blob>();
+            HashSet<String> removed = new HashSet<String>();
+            for (int i = 0; i < 100; i += 1) {
+                Blob blob = new Blob(Utils.sha1("file " + i));
+                all.put("f" + i + ".txt", blob);
+                if (i % 10 == 0) {
+                    kept.put("f" + i + ".txt", blob);
+                } else {
+                    removed.add("f" + i + ".txt");
+                }
+            }
+            HashSet<String> none = new HashSet<String>();
+            String full = Tree.update(store, null, all, none);
+            String pruned = Tree.update(store, full,
+                                        new HashMap<String, Blob>(), removed);
+            assertEquals(Tree.update(store, null, kept, none), pruned);
+            assertEquals(10, Tree.read(store, pruned).size());
+            String empty = Tree.update(store, full,
+                                       new HashMap<String, Blob>(),
+                                       all.keySet());
+            assertEquals(Tree.update(store, null,
+                                     new HashMap<String, Blob>(), none),
+                         empty);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /** Deletes DIR and everything in it. */
+    private static void delete(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder())
+                .forEach(path -> path.toFile().delete());
+        }
+    }
+
+}